@@ -0,0 +1,25 @@
+package org.appxi.smartcn.pinyin;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+
+/**
+ * JMH 入口，接受 JMH 的全部命令行参数，并总是加上 gc profiler 以输出分配率。
+ */
+public final class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        final ChainedOptionsBuilder options = new OptionsBuilder().parent(new CommandLineOptions(args));
+        if (!String.join(" ", Arrays.asList(args)).contains("-prof gc")) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+
+    private BenchmarkRunner() {
+    }
+}
@@ -0,0 +1,68 @@
+package org.appxi.smartcn.pinyin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 转换：PinyinConvertor.convert 及 PinyinHelper 的各个入口，短/中/超长三种输入。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConvertBenchmark {
+    @Param({"16", "1024", "1048576"})
+    public int length;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = SyntheticCorpus.get().text(length, 20220702L);
+        // 预先加载词典
+        PinyinConvertor.ONE.convert("");
+    }
+
+    @Benchmark
+    public Object convert() {
+        return PinyinConvertor.ONE.convert(text);
+    }
+
+    @Benchmark
+    public String pinyin() {
+        return PinyinHelper.pinyin(text);
+    }
+
+    @Benchmark
+    public String pinyinWithToneMark() {
+        return PinyinHelper.pinyin(text, true);
+    }
+
+    @Benchmark
+    public String convertWithSeparator() {
+        return PinyinHelper.convert(text, " ", false);
+    }
+
+    @Benchmark
+    public String convertWithNone() {
+        return PinyinHelper.convert(text, " ", true);
+    }
+
+    @Benchmark
+    public String convertToFirstChars() {
+        return PinyinHelper.convertToFirstChars(text, "", false);
+    }
+}
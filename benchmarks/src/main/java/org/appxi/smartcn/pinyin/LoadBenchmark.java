@@ -0,0 +1,58 @@
+package org.appxi.smartcn.pinyin;
+
+import org.appxi.smartcn.util.SmartCNHelper;
+import org.appxi.smartcn.util.trie.DoubleArrayTrieByAhoCorasick;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 词典加载：从 data.txt 冷构建（每次调用前删除 pinyin.bin），以及从 pinyin.bin 加载。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class LoadBenchmark {
+    @State(Scope.Thread)
+    public static class NoBinFile {
+        @Setup(Level.Invocation)
+        public void deleteBin() throws IOException {
+            Files.deleteIfExists(SmartCNHelper.resolveCache("pinyin.bin"));
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        // 确保 pinyin.bin 存在且为最新
+        PinyinConvertor.ONE.loadDictionaries(new DoubleArrayTrieByAhoCorasick<>());
+    }
+
+    @Benchmark
+    public Object coldBuild(NoBinFile noBinFile) {
+        final DoubleArrayTrieByAhoCorasick<Pinyin[]> trie = new DoubleArrayTrieByAhoCorasick<>();
+        PinyinConvertor.ONE.loadDictionaries(trie);
+        return trie;
+    }
+
+    @Benchmark
+    public Object binLoad() {
+        final DoubleArrayTrieByAhoCorasick<Pinyin[]> trie = new DoubleArrayTrieByAhoCorasick<>();
+        PinyinConvertor.ONE.loadDictionaries(trie);
+        return trie;
+    }
+}
@@ -0,0 +1,75 @@
+package org.appxi.smartcn.pinyin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 由 data.txt 生成的可复现的混合文本：单字、词典中的词、标点与英文/数字/URL 片段。
+ */
+final class SyntheticCorpus {
+    private static final String[] LATIN = {"iPhone", "2022", "OK", "Java 17", "https://example.com/a?b=1", "v1.2.3", "USB-C"};
+    private static final String PUNCTUATION = "，。、！？：；（）“”,.!? ";
+
+    private static SyntheticCorpus instance;
+
+    private final String[] singles;
+    private final String[] words;
+
+    private SyntheticCorpus() {
+        final List<String> singles = new ArrayList<>(), words = new ArrayList<>();
+        try (InputStream stream = PinyinConvertor.class.getResourceAsStream("data.txt");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                final int idx = line.indexOf('=');
+                if (idx <= 0) continue;
+                (idx == 1 ? singles : words).add(line.substring(0, idx));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.singles = singles.toArray(new String[0]);
+        this.words = words.toArray(new String[0]);
+    }
+
+    static synchronized SyntheticCorpus get() {
+        if (null == instance) instance = new SyntheticCorpus();
+        return instance;
+    }
+
+    /**
+     * 生成文本，相同的参数总是得到相同的结果
+     *
+     * @param length 长度（UTF-16 字符数）
+     * @param seed   随机种子
+     * @return 文本
+     */
+    String text(int length, long seed) {
+        final Random random = new Random(seed);
+        final StringBuilder buf = new StringBuilder(length + 32);
+        while (buf.length() < length) {
+            final int dice = random.nextInt(100);
+            if (dice < 45) {
+                buf.append(singles[random.nextInt(singles.length)]);
+            } else if (dice < 80) {
+                buf.append(words[random.nextInt(words.length)]);
+            } else if (dice < 92) {
+                buf.append(PUNCTUATION.charAt(random.nextInt(PUNCTUATION.length())));
+            } else {
+                buf.append(' ').append(LATIN[random.nextInt(LATIN.length)]).append(' ');
+            }
+        }
+        buf.setLength(length);
+        if (length > 0 && Character.isHighSurrogate(buf.charAt(length - 1))) {
+            buf.setCharAt(length - 1, ' ');
+        }
+        return buf.toString();
+    }
+}
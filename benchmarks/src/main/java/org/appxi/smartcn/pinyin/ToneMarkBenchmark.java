@@ -0,0 +1,41 @@
+package org.appxi.smartcn.pinyin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PinyinUtils.convertToneNumber2ToneMark，对全部拼音（数字声调形式）各转换一次。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ToneMarkBenchmark {
+    private String[] inputs;
+
+    @Setup
+    public void setup() {
+        inputs = Arrays.stream(Pinyin.values()).map(Pinyin::name).toArray(String[]::new);
+    }
+
+    @Benchmark
+    public void convertToneNumber2ToneMark(Blackhole blackhole) {
+        for (String input : inputs) {
+            blackhole.consume(PinyinUtils.convertToneNumber2ToneMark(input));
+        }
+    }
+}
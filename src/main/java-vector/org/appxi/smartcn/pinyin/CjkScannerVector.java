@@ -0,0 +1,30 @@
+package org.appxi.smartcn.pinyin;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link CjkScanner} 的向量实现，只在 jdk.incubator.vector 模块可用时由 {@link CjkScanner} 反射加载
+ */
+final class CjkScannerVector implements CjkScanner.Skipper {
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    CjkScannerVector() {
+        if (SPECIES.length() < 8) throw new UnsupportedOperationException("vector too narrow: " + SPECIES);
+    }
+
+    @Override
+    public int skip(char[] chars, int from, int to, char limit) {
+        final int step = SPECIES.length();
+        final int bound = to - step;
+        while (from <= bound) {
+            final ShortVector vector = ShortVector.fromCharArray(SPECIES, chars, from);
+            if (vector.compare(VectorOperators.UNSIGNED_GE, (short) limit).anyTrue()) {
+                return from;
+            }
+            from += step;
+        }
+        return from;
+    }
+}
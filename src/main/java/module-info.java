@@ -1,5 +1,7 @@
 module appxi.smartcn.pinyin {
     requires appxi.smartcn.shared;
+    requires jdk.jfr;
+    requires static jdk.httpserver;
 
     exports org.appxi.smartcn.pinyin;
 }
\ No newline at end of file
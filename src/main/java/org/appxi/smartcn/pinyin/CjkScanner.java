@@ -0,0 +1,57 @@
+package org.appxi.smartcn.pinyin;
+
+import java.util.Optional;
+
+/**
+ * 查找文本中不可能参与词典匹配的段落，词网构建时跳过这些段落，不送入词典匹配。
+ * <p>
+ * 界限由调用方给出，即词典词条中最小的字符（见 {@link PinyinConvertor}），小于它的字符不可能参与匹配；
+ * 内置词典的界限为 {@link #MIN_CJK}，用户词条含 ASCII、拉丁字母等字符时界限随之降低。
+ * 运行时加载了 jdk.incubator.vector 模块（--add-modules jdk.incubator.vector）时使用向量指令扫描，
+ * 否则使用逐字比较；可通过 -Dsmartcn.pinyin.vector=false 关闭向量扫描。
+ * 向量实现在单独的源码目录 src/main/java-vector 中编译，本模块不声明对孵化模块的依赖，运行时按需补上读取关系。
+ */
+final class CjkScanner {
+    /**
+     * 界限的上限：不小于它的字符（中文、全角标点、代理对等）总是逐字处理
+     */
+    static final char MIN_CJK = 0x3000;
+
+    /**
+     * 按整个向量前进，停在第一个包含不小于 limit 的字符的向量处，余下部分由调用方逐字处理
+     */
+    interface Skipper {
+        int skip(char[] chars, int from, int to, char limit);
+    }
+
+    private static final Skipper VECTOR = loadVector();
+
+    static final boolean VECTORIZED = null != VECTOR;
+
+    /**
+     * @return from 及其后第一个不小于 limit 的字符的位置，没有时为 to
+     */
+    static int skipBelow(char[] chars, int from, int to, char limit) {
+        if (null != VECTOR) {
+            from = VECTOR.skip(chars, from, to, limit);
+        }
+        while (from < to && chars[from] < limit) from++;
+        return from;
+    }
+
+    private static Skipper loadVector() {
+        if ("false".equals(System.getProperty("smartcn.pinyin.vector"))) return null;
+        final Optional<Module> vector = ModuleLayer.boot().findModule("jdk.incubator.vector");
+        if (vector.isEmpty()) return null;
+        try {
+            CjkScanner.class.getModule().addReads(vector.get());
+            return (Skipper) Class.forName("org.appxi.smartcn.pinyin.CjkScannerVector").getDeclaredConstructor().newInstance();
+        } catch (Throwable e) {
+            // 未编译向量实现、向量宽度不足等
+            return null;
+        }
+    }
+
+    private CjkScanner() {
+    }
+}
@@ -0,0 +1,27 @@
+package org.appxi.smartcn.pinyin;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * 词典加载的 JFR 事件的公共字段，持续时间即加载耗时
+ */
+@Category({"SmartCN", "Pinyin"})
+@StackTrace(false)
+abstract class DictionaryEvent extends Event {
+    @Label("Source")
+    String source;
+
+    @Label("Entries")
+    int entries;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long bytes;
+
+    @Label("From Bin Cache")
+    boolean fromBin;
+}
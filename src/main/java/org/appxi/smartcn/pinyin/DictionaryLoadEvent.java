@@ -0,0 +1,14 @@
+package org.appxi.smartcn.pinyin;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 词典首次加载
+ */
+@Name("org.appxi.smartcn.pinyin.DictionaryLoad")
+@Label("Pinyin Dictionary Load")
+@Description("Pinyin dictionary loaded from the bin cache or built from text sources")
+final class DictionaryLoadEvent extends DictionaryEvent {
+}
@@ -0,0 +1,14 @@
+package org.appxi.smartcn.pinyin;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 词典重新加载
+ */
+@Name("org.appxi.smartcn.pinyin.DictionaryReload")
+@Label("Pinyin Dictionary Reload")
+@Description("Pinyin dictionary reloaded after the first load")
+final class DictionaryReloadEvent extends DictionaryEvent {
+}
@@ -0,0 +1,28 @@
+package org.appxi.smartcn.pinyin;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * 耗时超过阈值的一次转换（词典匹配与消歧），阈值可通过 JFR 设置调整，如
+ * <pre>
+ * -XX:StartFlightRecording:settings=profile,org.appxi.smartcn.pinyin.LargeConversion#threshold=1ms
+ * </pre>
+ * 未开启记录时事件对象经逃逸分析消除，只剩一次空的 begin 与 commit 调用。
+ */
+@Name("org.appxi.smartcn.pinyin.LargeConversion")
+@Label("Large Pinyin Conversion")
+@Description("Pinyin conversion that took longer than the threshold")
+@Category({"SmartCN", "Pinyin"})
+@Threshold("20 ms")
+final class LargeConversionEvent extends Event {
+    @Label("Input Length")
+    int length;
+
+    @Label("Dictionary Matches")
+    int matches;
+}
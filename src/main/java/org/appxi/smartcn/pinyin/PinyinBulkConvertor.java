@@ -0,0 +1,346 @@
+package org.appxi.smartcn.pinyin;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 按行批量转换大文件（如人名 CSV、标题 TSV）的命令行入口：
+ * <pre>
+ * java -p ... -m appxi.smartcn.pinyin/org.appxi.smartcn.pinyin.PinyinBulkConvertor [选项] 输入|- [输出|-]
+ *
+ *   -c, --column N      转换第 N 列（从 1 开始），0 为整行，默认 0
+ *   -d, --delimiter C   列分隔符，默认为制表符；可用 tab、comma
+ *   -f, --format F      toneless、tone-mark、numbered、initials，默认 toneless
+ *   -s, --separator S   拼音之间的分隔符，默认为空格
+ *   -r, --replace       以拼音替换该列，默认追加为最后一列
+ *   -H, --header        第一行原样输出
+ *   -t, --threads N     转换线程数，默认为 CPU 数
+ * </pre>
+ * 读取 → N 个转换线程 → 按序写出：普通文件以内存映射读取，按换行切成约 1MB 的批次；
+ * 批次同时进入有界的工作队列与有界的顺序队列，写出线程按顺序队列等待各批次的结果，在途批次数因此有上限。
+ * 列按分隔符直接切分，不处理 CSV 的引号转义。结束时在标准错误输出行数、行/秒与 MB/秒。
+ */
+public final class PinyinBulkConvertor {
+    private static final int BATCH_BYTES = 1 << 20;
+    private static final int WINDOW_BYTES = 64 << 20;
+
+    private record Batch(int seq, ByteBuffer bytes, CompletableFuture<Result> result) {
+    }
+
+    private record Result(ByteBuffer bytes, int lines) {
+    }
+
+    private static final Batch END = new Batch(-1, null, CompletableFuture.completedFuture(null));
+
+    private final int column;
+    private final char delimiter;
+    private final PinyinFormat format;
+    private final String separator;
+    private final boolean replace;
+    private final boolean header;
+    private final int threads;
+
+    private PinyinBulkConvertor(int column, char delimiter, PinyinFormat format, String separator,
+                                boolean replace, boolean header, int threads) {
+        this.column = column;
+        this.delimiter = delimiter;
+        this.format = format;
+        this.separator = separator;
+        this.replace = replace;
+        this.header = header;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) {
+        int column = 0;
+        char delimiter = '\t';
+        PinyinFormat format = PinyinFormat.WITHOUT_TONE;
+        String separator = " ";
+        boolean replace = false;
+        boolean header = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String input = null;
+        String output = "-";
+        try {
+            for (int i = 0; i < args.length; i++) {
+                final String arg = args[i];
+                switch (arg) {
+                    case "-c", "--column" -> column = Integer.parseInt(args[++i]);
+                    case "-d", "--delimiter" -> delimiter = delimiter(args[++i]);
+                    case "-f", "--format" -> format = PinyinFormat.parse(args[++i]);
+                    case "-s", "--separator" -> separator = args[++i];
+                    case "-r", "--replace" -> replace = true;
+                    case "-H", "--header" -> header = true;
+                    case "-t", "--threads" -> threads = Integer.parseInt(args[++i]);
+                    case "-h", "--help" -> {
+                        usage(null);
+                        return;
+                    }
+                    default -> {
+                        if (arg.startsWith("-") && arg.length() > 1) throw new IllegalArgumentException("unknown option: " + arg);
+                        if (null == input) input = arg;
+                        else output = arg;
+                    }
+                }
+            }
+            if (null == input) throw new IllegalArgumentException("missing input");
+            if (column < 0) throw new IllegalArgumentException("column: " + column);
+            if (threads <= 0) throw new IllegalArgumentException("threads: " + threads);
+        } catch (RuntimeException e) {
+            usage(e instanceof ArrayIndexOutOfBoundsException ? "missing option value" : e.getMessage());
+            System.exit(2);
+            return;
+        }
+        try {
+            new PinyinBulkConvertor(column, delimiter, format, separator, replace, header, threads).run(input, output);
+        } catch (Exception e) {
+            System.err.println("pinyin: " + (e instanceof CompletionException && null != e.getCause() ? e.getCause() : e));
+            System.exit(1);
+        }
+    }
+
+    private static void usage(String error) {
+        if (null != error) System.err.println("pinyin: " + error);
+        System.err.println("usage: PinyinBulkConvertor [-c column] [-d delimiter] [-f toneless|tone-mark|numbered|initials]"
+                + " [-s separator] [-r] [-H] [-t threads] input|- [output|-]");
+    }
+
+    private static char delimiter(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "tab", "\\t" -> '\t';
+            case "comma" -> ',';
+            default -> {
+                if (value.length() != 1) throw new IllegalArgumentException("delimiter: " + value);
+                yield value.charAt(0);
+            }
+        };
+    }
+
+    private void run(String input, String output) throws Exception {
+        final long startNanos = System.nanoTime();
+        // 词典在启动转换线程前加载，不计入各线程
+        PinyinConvertor.ONE.getDictionaryTrie();
+        final BlockingQueue<Batch> work = new ArrayBlockingQueue<>(threads * 2);
+        final BlockingQueue<Batch> order = new ArrayBlockingQueue<>(threads * 4);
+        final long[] inputBytes = new long[1];
+        final Thread reader = new Thread(() -> {
+            Throwable failure = null;
+            try {
+                inputBytes[0] = "-".equals(input) ? readStream(System.in, work, order) : read(Path.of(input), work, order);
+            } catch (Throwable e) {
+                failure = e;
+            }
+            try {
+                for (int i = 0; i < threads; i++) {
+                    work.put(END);
+                }
+                // 读取失败时，写出线程写完已读取的批次后在此失败
+                order.put(null == failure ? END : new Batch(-1, null, CompletableFuture.failedFuture(failure)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "pinyin-reader");
+        reader.setDaemon(true);
+        final Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> {
+                try {
+                    for (Batch batch; (batch = work.take()) != END; ) {
+                        try {
+                            batch.result.complete(convert(batch));
+                        } catch (Throwable e) {
+                            batch.result.completeExceptionally(e);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "pinyin-worker-" + i);
+            workers[i].setDaemon(true);
+        }
+        reader.start();
+        for (Thread worker : workers) worker.start();
+
+        long lines = 0;
+        long outputBytes = 0;
+        try (FileChannel out = "-".equals(output)
+                ? new FileOutputStream(FileDescriptor.out).getChannel()
+                : FileChannel.open(Path.of(output), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Batch batch; (batch = order.take()) != END; ) {
+                final Result result = batch.result.join();
+                if (null == result) continue;
+                lines += result.lines;
+                outputBytes += result.bytes.remaining();
+                while (result.bytes.hasRemaining()) out.write(result.bytes);
+            }
+        } finally {
+            reader.interrupt();
+            for (Thread worker : workers) worker.interrupt();
+        }
+        final double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        System.err.printf(Locale.ROOT, "pinyin: %d lines, %.1f MB in, %.1f MB out, %.2f s, %.0f lines/s, %.1f MB/s%n",
+                lines, inputBytes[0] / 1e6, outputBytes / 1e6, seconds, lines / seconds, inputBytes[0] / 1e6 / seconds);
+    }
+
+    private static void put(BlockingQueue<Batch> queue, Batch batch) {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted", e);
+        }
+    }
+
+    private static void submit(int seq, ByteBuffer bytes, BlockingQueue<Batch> work, BlockingQueue<Batch> order) {
+        final Batch batch = new Batch(seq, bytes, new CompletableFuture<>());
+        // 先进入顺序队列：顺序队列满时读取线程在此等待写出，工作队列中的批次总在顺序队列中
+        put(order, batch);
+        put(work, batch);
+    }
+
+    /**
+     * 普通文件以内存映射读取，按 64MB 的窗口映射，在窗口内按换行切分批次
+     *
+     * @return 读取的字节数
+     */
+    private static long read(Path path, BlockingQueue<Batch> work, BlockingQueue<Batch> order) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            try (InputStream stream = Files.newInputStream(path)) {
+                return readStream(stream, work, order);
+            }
+        }
+        int seq = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            long position = 0;
+            int window = WINDOW_BYTES;
+            while (position < size) {
+                final long length = Math.min(window, size - position);
+                final boolean last = position + length == size;
+                final ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int start = 0;
+                while (start < length) {
+                    final int end = lineEnd(mapped, Math.min(start + BATCH_BYTES, (int) length), (int) length, last);
+                    if (end < 0) break;
+                    submit(seq++, mapped.slice(start, end - start), work, order);
+                    start = end;
+                }
+                if (start == 0 && !last) {
+                    // 一行比窗口还长，扩大窗口重新映射
+                    window = (int) Math.min(Integer.MAX_VALUE - 8, window * 2L);
+                    continue;
+                }
+                position += start;
+            }
+        }
+        return Files.size(path);
+    }
+
+    /**
+     * @return from 处或其后第一个换行之后的位置；没有换行时，last 为 true 返回 limit，否则返回 -1
+     */
+    private static int lineEnd(ByteBuffer bytes, int from, int limit, boolean last) {
+        for (int i = Math.max(0, from - 1); i < limit; i++) {
+            if (bytes.get(i) == '\n') return i + 1;
+        }
+        return last ? limit : -1;
+    }
+
+    /**
+     * 管道等无法映射的输入，按批次大小读取，末尾不完整的行留给下一批
+     *
+     * @return 读取的字节数
+     */
+    private static long readStream(InputStream stream, BlockingQueue<Batch> work, BlockingQueue<Batch> order) throws IOException {
+        if (stream == System.in) stream = new FileInputStream(FileDescriptor.in);
+        long total = 0;
+        int seq = 0;
+        byte[] buffer = new byte[BATCH_BYTES];
+        int filled = 0;
+        while (true) {
+            final int n = stream.read(buffer, filled, buffer.length - filled);
+            if (n < 0) break;
+            total += n;
+            filled += n;
+            if (filled < buffer.length) continue;
+            int end = filled;
+            while (end > 0 && buffer[end - 1] != '\n') end--;
+            if (end == 0) {
+                // 一行比缓冲区还长
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                continue;
+            }
+            final byte[] next = new byte[Math.max(BATCH_BYTES, filled - end)];
+            System.arraycopy(buffer, end, next, 0, filled - end);
+            submit(seq++, ByteBuffer.wrap(buffer, 0, end), work, order);
+            filled -= end;
+            buffer = next;
+        }
+        if (filled > 0) submit(seq, ByteBuffer.wrap(buffer, 0, filled), work, order);
+        return total;
+    }
+
+    private Result convert(Batch batch) {
+        final CharBuffer text = StandardCharsets.UTF_8.decode(batch.bytes);
+        final char[] chars = text.array();
+        final int limit = text.limit();
+        final StringBuilder result = new StringBuilder(limit * 3);
+        final PinyinRenderer renderer = PinyinConvertor.ONE.renderer(format, separator);
+        final PinyinRenderer.Output out = renderer.output(result);
+        int lines = 0;
+        for (int start = 0; start < limit; ) {
+            int next = start;
+            while (next < limit && chars[next] != '\n') next++;
+            int end = next;
+            if (end > start && chars[end - 1] == '\r') end--;
+            if (header && batch.seq == 0 && lines == 0) result.append(chars, start, end - start);
+            else convertLine(chars, start, end, renderer, out, result);
+            result.append('\n');
+            lines++;
+            start = next + 1;
+        }
+        return new Result(StandardCharsets.UTF_8.encode(CharBuffer.wrap(result)), lines);
+    }
+
+    private void convertLine(char[] chars, int start, int end, PinyinRenderer renderer, PinyinRenderer.Output out, StringBuilder result) {
+        int from = start;
+        int to = end;
+        if (column > 0) {
+            // 定位第 column 列，列数不足时视为空列
+            for (int n = 1; n < column && from <= end; n++) {
+                while (from < end && chars[from] != delimiter) from++;
+                from++;
+            }
+            if (from > end) from = to = end;
+            else {
+                to = from;
+                while (to < end && chars[to] != delimiter) to++;
+            }
+        }
+        final char[] value = Arrays.copyOfRange(chars, from, to);
+        if (replace) {
+            result.append(chars, start, from - start);
+            renderer.pinyin(value, PinyinConvertor.ONE.wordNet(value), out);
+            result.append(chars, to, end - to);
+        } else {
+            result.append(chars, start, end - start).append(delimiter);
+            renderer.pinyin(value, PinyinConvertor.ONE.wordNet(value), out);
+        }
+    }
+}
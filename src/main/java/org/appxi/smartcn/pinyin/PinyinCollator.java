@@ -0,0 +1,202 @@
+package org.appxi.smartcn.pinyin;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * 按拼音排序的比较器。
+ * <p>
+ * 每个字符串先转换为一个可按无符号字节序直接比较的排序键（{@link #key(CharSequence)}），
+ * 排序键由拼音序号而非拼音字符串构成：
+ * <ul>
+ *     <li>第一级：每个字 3 字节，拼音为 [0x02, 音节序号]，无拼音的字符为 [0x01, 字符]，即非中文排在中文之前</li>
+ *     <li>第二级（{@link Strength#TONE_SECONDARY}）：0x00 分隔，每个字 1 字节声调</li>
+ *     <li>第三级（字符决胜）：0x00 分隔，每个字 2 字节原字符，区分同音字</li>
+ * </ul>
+ * 大量数据排序请使用 {@link #sort(List, Function)}，每个元素只转换一次。
+ */
+public final class PinyinCollator implements Comparator<CharSequence> {
+    /**
+     * 声调的比较方式
+     */
+    public enum Strength {
+        /**
+         * 忽略声调
+         */
+        IGNORE_TONE,
+        /**
+         * 先比较不带声调的拼音，全部相同时再比较声调
+         */
+        TONE_SECONDARY,
+        /**
+         * 声调作为音节的一部分参与第一级比较，如 ma1 &lt; ma2 &lt; mai1
+         */
+        TONE_PRIMARY,
+    }
+
+    /**
+     * 默认：声调为第二级，字符决胜
+     */
+    public static final PinyinCollator DEFAULT = new PinyinCollator(Strength.TONE_SECONDARY, true);
+
+    private static final byte TAG_NONE = 0x01;
+    private static final byte TAG_PINYIN = 0x02;
+    private static final byte LEVEL_SEPARATOR = 0x00;
+
+    /**
+     * 按不带声调的拼音字母序的音节序号，以 Pinyin.ordinal() 为下标
+     */
+    static final short[] TONELESS_RANK;
+    /**
+     * 按 (不带声调的拼音, 声调) 排序的音节序号，以 Pinyin.ordinal() 为下标
+     */
+    static final short[] TONED_RANK;
+
+    static {
+        final Pinyin[] pinyins = Pinyin.values();
+        final List<String> toneless = List.copyOf(new TreeSet<>(Arrays.stream(pinyins).map(Pinyin::getPinyinWithoutTone).toList()));
+        TONELESS_RANK = new short[pinyins.length];
+        TONED_RANK = new short[pinyins.length];
+        for (Pinyin pinyin : pinyins) {
+            final int rank = toneless.indexOf(pinyin.getPinyinWithoutTone());
+            TONELESS_RANK[pinyin.ordinal()] = (short) rank;
+            TONED_RANK[pinyin.ordinal()] = (short) (rank * 8 + pinyin.getTone());
+        }
+    }
+
+    private final Strength strength;
+    private final boolean characterTiebreak;
+
+    /**
+     * @param strength          声调的比较方式
+     * @param characterTiebreak 拼音完全相同时是否再按原字符比较
+     */
+    public PinyinCollator(Strength strength, boolean characterTiebreak) {
+        this.strength = strength;
+        this.characterTiebreak = characterTiebreak;
+    }
+
+    /**
+     * 生成排序键，两个排序键以 {@link Arrays#compareUnsigned(byte[], byte[])} 比较的结果即两个文本的拼音顺序
+     *
+     * @param text 文本
+     * @return 排序键
+     */
+    public byte[] key(CharSequence text) {
+        final char[] chars = PinyinConvertor.toChars(text);
+        final Pinyin[][] wordNet = PinyinConvertor.ONE.wordNet(chars);
+        // 补充平面汉字的低代理位置（含多字词条中的）不生成排序单元
+        int units = chars.length;
+        for (int i = 0; i < chars.length; ) {
+            final Pinyin[] entry = wordNet[i];
+            if (null == entry || entry == PinyinConvertor.TAIL) {
+                if (null != entry) units--;
+                i++;
+                continue;
+            }
+            for (Pinyin pinyin : entry) {
+                if (null == pinyin) units--;
+            }
+            i += entry.length;
+        }
+        final boolean secondary = strength == Strength.TONE_SECONDARY;
+        final short[] ranks = strength == Strength.TONE_PRIMARY ? TONED_RANK : TONELESS_RANK;
+        final byte[] key = new byte[units * 3
+                                    + (secondary ? 1 + units : 0)
+                                    + (characterTiebreak ? 1 + chars.length * 2 : 0)];
+        int tones = units * 3 + 1;
+        int pos = 0;
+        for (int i = 0; i < chars.length; ) {
+            final Pinyin[] entry = wordNet[i];
+            if (entry == PinyinConvertor.TAIL) {
+                i++;
+                continue;
+            }
+            if (null == entry) {
+                final char ch = chars[i++];
+                key[pos++] = TAG_NONE;
+                key[pos++] = (byte) (ch >> 8);
+                key[pos++] = (byte) ch;
+                if (secondary) key[tones++] = 0;
+                continue;
+            }
+            for (Pinyin pinyin : entry) {
+                if (null == pinyin) continue;
+                final short rank = ranks[pinyin.ordinal()];
+                key[pos++] = TAG_PINYIN;
+                key[pos++] = (byte) (rank >> 8);
+                key[pos++] = (byte) rank;
+                if (secondary) key[tones++] = (byte) pinyin.getTone();
+            }
+            i += entry.length;
+        }
+        if (secondary) {
+            key[pos] = LEVEL_SEPARATOR;
+            pos = tones;
+        }
+        if (characterTiebreak) {
+            key[pos++] = LEVEL_SEPARATOR;
+            for (char ch : chars) {
+                key[pos++] = (byte) (ch >> 8);
+                key[pos++] = (byte) ch;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * 排序键的前 8 个字节，以 {@link Long#compareUnsigned(long, long)} 比较；相等时需再比较完整排序键
+     *
+     * @param key {@link #key(CharSequence)} 生成的排序键
+     * @return 前缀
+     */
+    public static long prefix(byte[] key) {
+        long prefix = 0;
+        for (int i = 0; i < 8; i++) {
+            prefix = prefix << 8 | (i < key.length ? key[i] & 0xFF : 0);
+        }
+        return prefix;
+    }
+
+    @Override
+    public int compare(CharSequence o1, CharSequence o2) {
+        return Arrays.compareUnsigned(key(o1), key(o2));
+    }
+
+    /**
+     * 按拼音排序（稳定），每个元素的排序键只并行计算一次，然后以 {@link Arrays#parallelSort(Object[])} 排序
+     *
+     * @param list  待排序的列表，原地修改
+     * @param text  获取元素的文本
+     * @param <T>   元素类型
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void sort(List<T> list, Function<? super T, ? extends CharSequence> text) {
+        final Object[] items = list.toArray();
+        final Keyed[] keyed = new Keyed[items.length];
+        IntStream.range(0, items.length).parallel().forEach(i -> {
+            final byte[] key = key(text.apply((T) items[i]));
+            keyed[i] = new Keyed(prefix(key), key, i);
+        });
+        Arrays.parallelSort(keyed);
+        final ListIterator<T> iterator = list.listIterator();
+        for (Keyed item : keyed) {
+            iterator.next();
+            iterator.set((T) items[item.index]);
+        }
+    }
+
+    private record Keyed(long prefix, byte[] key, int index) implements Comparable<Keyed> {
+        @Override
+        public int compareTo(Keyed o) {
+            int result = Long.compareUnsigned(prefix, o.prefix);
+            if (result == 0) result = Arrays.compareUnsigned(key, o.key);
+            return result != 0 ? result : Integer.compare(index, o.index);
+        }
+    }
+}
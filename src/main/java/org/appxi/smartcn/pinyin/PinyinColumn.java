@@ -0,0 +1,183 @@
+package org.appxi.smartcn.pinyin;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * 一列文本的拼音结果，列式存放，供分组、去重、关联等分析计算直接在基本类型数组上进行，每行不产生对象。
+ * <p>
+ * 第 row 行占 ordinals[offsets[row] .. offsets[row + 1])，每字一个 {@link Pinyin} 序号：
+ * 没有拼音的字（原样输出的字符）为 -1，补充平面汉字的低代理为 -2；需要原样字符时可同时保留全部原文于 chars（与 ordinals 对齐）。
+ * 先按各行长度算出偏移并一次分配全部数组，再按行块并行转换：每块的各行以分隔符连接后只建一次词网，
+ * 按行的区间直接写入序号，不为每行生成字符数组与词网。
+ *
+ * @see PinyinSequence
+ */
+public final class PinyinColumn {
+    private static final Pinyin[] PINYINS = Pinyin.values();
+    private static final int BLOCK_ROWS = 256;
+    /**
+     * 块内各行的分隔符：非字符 U+FFFE，不出现在词条中，匹配不会跨行；
+     * 它与消歧器表示文本首尾的 {@link PinyinDisambiguator#NONE} 相同，各行首尾的上下文与单独转换时一致
+     */
+    private static final char ROW_SEPARATOR = (char) PinyinDisambiguator.NONE;
+
+    private final short[] ordinals;
+    private final int[] offsets;
+    private final char[] chars;
+
+    private PinyinColumn(short[] ordinals, int[] offsets, char[] chars) {
+        this.ordinals = ordinals;
+        this.offsets = offsets;
+        this.chars = chars;
+    }
+
+    /**
+     * 转换一列文本
+     *
+     * @param rows      各行文本，null 视为空串
+     * @param keepChars 是否同时保留原文
+     * @return 列式结果
+     */
+    public static PinyinColumn of(CharSequence[] rows, boolean keepChars) {
+        final int[] offsets = new int[rows.length + 1];
+        long total = 0;
+        for (int row = 0; row < rows.length; row++) {
+            total += null == rows[row] ? 0 : rows[row].length();
+            if (total > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("too many chars: " + total);
+            offsets[row + 1] = (int) total;
+        }
+        final short[] ordinals = new short[(int) total];
+        final char[] chars = keepChars ? new char[(int) total] : null;
+        final int blocks = (rows.length + BLOCK_ROWS - 1) / BLOCK_ROWS;
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            final int from = block * BLOCK_ROWS;
+            final int to = Math.min(rows.length, from + BLOCK_ROWS);
+            final char[] text = new char[offsets[to] - offsets[from] + (to - from - 1)];
+            for (int row = from, pos = 0; row < to; row++) {
+                if (row > from) text[pos++] = ROW_SEPARATOR;
+                final int length = offsets[row + 1] - offsets[row];
+                if (length > 0) {
+                    getChars(rows[row], text, pos);
+                    if (null != chars) System.arraycopy(text, pos, chars, offsets[row], length);
+                }
+                pos += length;
+            }
+            final Pinyin[][] wordNet = PinyinConvertor.ONE.wordNet(text);
+            for (int row = from, pos = 0; row < to; row++) {
+                final int length = offsets[row + 1] - offsets[row];
+                fill(wordNet, pos, pos + length, ordinals, offsets[row]);
+                pos += length + 1;
+            }
+        });
+        return new PinyinColumn(ordinals, offsets, chars);
+    }
+
+    private static void getChars(CharSequence text, char[] dst, int at) {
+        if (text instanceof String str) {
+            str.getChars(0, str.length(), dst, at);
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            dst[at + i] = text.charAt(i);
+        }
+    }
+
+    /**
+     * 词网的 [from, to) 写入 ordinals 的 at 处
+     */
+    private static void fill(Pinyin[][] wordNet, int from, int to, short[] ordinals, int at) {
+        at -= from;
+        for (int i = from; i < to; ) {
+            final Pinyin[] entry = wordNet[i];
+            if (entry == PinyinConvertor.TAIL) {
+                ordinals[at + i++] = PinyinSequence.TAIL;
+            } else if (null == entry) {
+                ordinals[at + i++] = PinyinSequence.NONE;
+            } else {
+                for (Pinyin pinyin : entry) {
+                    ordinals[at + i++] = null == pinyin ? PinyinSequence.TAIL : (short) pinyin.ordinal();
+                }
+            }
+        }
+    }
+
+    public int rows() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return 全部行的拼音序号，不复制
+     */
+    public short[] ordinals() {
+        return ordinals;
+    }
+
+    /**
+     * @return 行偏移，长度为行数 + 1，不复制
+     */
+    public int[] offsets() {
+        return offsets;
+    }
+
+    /**
+     * @return 全部行的原文，与 {@link #ordinals()} 对齐；未保留时为 null
+     */
+    public char[] chars() {
+        return chars;
+    }
+
+    public int start(int row) {
+        return offsets[row];
+    }
+
+    public int length(int row) {
+        return offsets[row + 1] - offsets[row];
+    }
+
+    /**
+     * @return 第 row 行第 index 个字的拼音，没有拼音时为 null
+     */
+    public Pinyin pinyin(int row, int index) {
+        if (index < 0 || index >= length(row)) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length(row));
+        }
+        final short ordinal = ordinals[offsets[row] + index];
+        return ordinal < 0 ? null : PINYINS[ordinal];
+    }
+
+    /**
+     * 一行的 64 位哈希：拼音相同的行哈希相同；保留原文时没有拼音的字按原字符计入，否则只计为一个占位
+     */
+    public long hash(int row) {
+        long hash = 0x9E3779B97F4A7C15L ^ length(row);
+        for (int i = offsets[row], end = offsets[row + 1]; i < end; i++) {
+            final int value = ordinals[i] == PinyinSequence.NONE && null != chars ? 0x10000 | chars[i] : ordinals[i] & 0xFFFF;
+            hash = (hash ^ value) * 0x100000001B3L;
+            hash ^= hash >>> 29;
+        }
+        return hash;
+    }
+
+    /**
+     * 一行读音的指纹，保留原文时与 {@link PinyinFingerprint#of(CharSequence, PinyinFingerprint.Mode)} 的结果相同
+     */
+    public long fingerprint(int row, PinyinFingerprint.Mode mode) {
+        return PinyinFingerprint.of(ordinals, null == chars ? null : CharBuffer.wrap(chars), offsets[row], offsets[row + 1], mode);
+    }
+
+    /**
+     * 两行的拼音是否相同；保留原文时没有拼音的字还须原字符相同
+     */
+    public boolean rowEquals(int row, int other) {
+        final int from = offsets[row], to = offsets[row + 1];
+        final int otherFrom = offsets[other], otherTo = offsets[other + 1];
+        if (!Arrays.equals(ordinals, from, to, ordinals, otherFrom, otherTo)) return false;
+        if (null == chars) return true;
+        for (int i = from, j = otherFrom; i < to; i++, j++) {
+            if (ordinals[i] == PinyinSequence.NONE && chars[i] != chars[j]) return false;
+        }
+        return true;
+    }
+}
@@ -2,34 +2,131 @@ package org.appxi.smartcn.pinyin;
 
 import org.appxi.smartcn.util.SmartCNHelper;
 import org.appxi.smartcn.util.bytes.ByteArray;
-import org.appxi.smartcn.util.bytes.BytesHelper;
-import org.appxi.smartcn.util.dictionary.StringDictionary;
 import org.appxi.smartcn.util.trie.AbstractDictionaryTrieApp;
 import org.appxi.smartcn.util.trie.DoubleArrayTrieByAhoCorasick;
 import org.appxi.util.FileHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.module.ModuleDescriptor;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
 
 public class PinyinConvertor extends AbstractDictionaryTrieApp<Pinyin[]> {
     private static final Logger logger = LoggerFactory.getLogger(PinyinConvertor.class);
 
     public static final PinyinConvertor ONE = new PinyinConvertor();
 
+    /**
+     * 不少于此长度、不可能参与匹配的段落跳过词典匹配
+     */
+    private static final int MIN_SKIP = 16;
+
+    /**
+     * pinyin.bin 的格式标记，旧格式文件以非负的词条数开头，读到其它值时重建
+     */
+    private static final int BIN_FORMAT = -7;
+
+    /**
+     * 等待其它进程重建缓存的最长时间
+     */
+    private static final long LOCK_TIMEOUT_MILLIS = 60_000;
+
+    /**
+     * 词网中补充平面汉字低代理位置的标记，读音在其前一个（高代理）位置
+     */
+    static final Pinyin[] TAIL = {};
+
+    private volatile PinyinDisambiguator disambiguator;
+
+    private volatile PinyinMetrics metrics = PinyinMetrics.NONE;
+
+    private volatile PinyinOovRecorder oovRecorder;
+
+    private volatile PinyinResultCache resultCache;
+
+    /**
+     * 结果缓存的世代，生效的词典或消歧器变化后递增；缓存键带有世代，变化前开始的转换写入的结果不会再被读到
+     */
+    private final AtomicLong cacheGeneration = new AtomicLong();
+
+    /**
+     * 最近一次取得世代时生效的词典
+     */
+    private volatile DoubleArrayTrieByAhoCorasick<Pinyin[]> generationTrie;
+
+    /**
+     * 使用镜像堆中的内置词典时为该实例（此时基类持有的词典为空），否则为 null
+     */
+    private volatile DoubleArrayTrieByAhoCorasick<Pinyin[]> imageTrie;
+
+    private volatile boolean loaded;
+
+    private volatile SupplementaryTable supplementary = new SupplementaryTable();
+
+    /**
+     * 跳过段落的界限：词典词条中最小的字符，且不超过 {@link CjkScanner#MIN_CJK}，小于它的字符不可能参与匹配。
+     * 只降不升，重新加载期间新旧词典都不会因此漏掉匹配
+     */
+    private volatile char skipLimit = CjkScanner.MIN_CJK;
+
+    /**
+     * 是否有词条含大文本拆分的边界字符（见 {@link PinyinTxtParser#isBoundary}），此时 {@link PinyinStreams} 不拆分。
+     * 与 skipLimit 相同只置不清
+     */
+    private volatile boolean boundaryInKeys;
+
+    /**
+     * 内置 data.txt 的内容哈希，随 jar 不变，只计算一次
+     */
+    private long defaultSourceHash;
+
+    /**
+     * 上次计算的 pinyin.txt 内容哈希，文件大小与修改时间不变时复用
+     */
+    private SourceHash managedSourceHash;
+
+    private record SourceHash(long size, long modified, long hash) {
+    }
+
+    private final Map<PinyinFormat, ConcurrentHashMap<String, PinyinRenderer>> renderers = new EnumMap<>(PinyinFormat.class);
+
     private PinyinConvertor() {
+        for (PinyinFormat format : PinyinFormat.values()) {
+            renderers.put(format, new ConcurrentHashMap<>());
+        }
         // 删除旧版数据
         FileHelper.deleteDirectory(SmartCNHelper.resolveData("pinyin"));
         FileHelper.deleteDirectory(SmartCNHelper.resolveCache("pinyin"));
@@ -37,6 +134,35 @@ public class PinyinConvertor extends AbstractDictionaryTrieApp<Pinyin[]> {
 
     @Override
     protected final void loadDictionaries(DoubleArrayTrieByAhoCorasick<Pinyin[]> trie) {
+        try {
+            imageTrie = load(trie) ? PinyinImageHeap.trie() : null;
+        } finally {
+            // 新词典建好之后才使缓存失效，加载期间写入的旧结果属于旧世代
+            invalidateResults();
+        }
+    }
+
+    /**
+     * @return 是否使用镜像堆中的内置词典，此时 trie 保持为空
+     */
+    private boolean load(DoubleArrayTrieByAhoCorasick<Pinyin[]> trie) {
+        // 词条实例随词典重建而变化，已生成的输出形式作废
+        renderers.values().forEach(Map::clear);
+        final boolean reload = loaded;
+        loaded = true;
+        final long startNanos = System.nanoTime();
+        final DictionaryEvent event = reload ? new DictionaryReloadEvent() : new DictionaryLoadEvent();
+        event.begin();
+        // user managed
+        final Path txtFileManaged = SmartCNHelper.resolveData("pinyin.txt");
+        // native image 构建时已建好的内置词典，没有用户数据时直接使用，不复制也不反序列化
+        if (PinyinImageHeap.present() && !FileHelper.exists(txtFileManaged)) {
+            this.supplementary = PinyinImageHeap.supplementary();
+            lowerSkipLimit(PinyinImageHeap.minKeyChar());
+            if (PinyinImageHeap.boundaryInKeys()) boundaryInKeys = true;
+            loaded(event, reload, PinyinMetrics.Source.IMAGE, PinyinImageHeap.trie().size() + supplementary.size(), 0, startNanos);
+            return true;
+        }
         // default
         URLConnection txtFileDefault = null;
         try {
@@ -44,119 +170,471 @@ public class PinyinConvertor extends AbstractDictionaryTrieApp<Pinyin[]> {
         } catch (Exception e) {
             logger.warn("should never here", e);
         }
-        // user managed
-        final Path txtFileManaged = SmartCNHelper.resolveData("pinyin.txt");
         // cache file
         final Path binFile = SmartCNHelper.resolveCache("pinyin.bin");
-        // 检查缓存bin文件是否需要重建
-        if (!FileHelper.isTargetFileUpdatable(binFile, txtFileDefault, txtFileManaged)) {
-            // load from bin
-            final long st = System.currentTimeMillis();
+        // 以来源内容的哈希而非修改时间判断缓存bin文件是否需要重建
+        final long sourcesHash = sourcesHash(txtFileDefault, txtFileManaged);
+        int entries = loadBin(trie, binFile, sourcesHash);
+        if (entries >= 0) {
+            loaded(event, reload, PinyinMetrics.Source.BIN, entries, sizeOf(binFile), startNanos);
+            return false;
+        }
+        // 多个进程共用缓存目录时，只由持有锁的进程重建，其它进程等待后直接加载其结果
+        FileHelper.makeParents(binFile);
+        final FileLock lock = lockCache(binFile.resolveSibling(binFile.getFileName() + ".lock"));
+        try {
+            if (null != lock) {
+                entries = loadBin(trie, binFile, sourcesHash);
+                if (entries >= 0) {
+                    loaded(event, reload, PinyinMetrics.Source.BIN, entries, sizeOf(binFile), startNanos);
+                    return false;
+                }
+            }
+            // load primary txt
+            final long[] bytes = new long[2];
+            TreeMap<String, Pinyin[]> primaryMap = parseSources(txtFileDefault, txtFileManaged, bytes);
+            // 补充平面的单字放入单独的码位表，不进入词典
+            final SupplementaryTable supplementary = PinyinTxtParser.splitSupplementary(primaryMap,
+                    key -> logger.warn("词条有孤立代理或读音数与字数不符【" + key + "】"));
+            this.supplementary = supplementary;
+            final char minKeyChar = PinyinTxtParser.minKeyChar(primaryMap.keySet());
+            lowerSkipLimit(minKeyChar);
+            final boolean boundaryInKeys = PinyinTxtParser.containsBoundary(primaryMap.keySet());
+            if (boundaryInKeys) this.boundaryInKeys = true;
+
+            // build to trie
+            long st = System.currentTimeMillis();
+            trie.build(primaryMap);
+            logger.info("trie.build + " + (System.currentTimeMillis() - st));
+            // 建好之后只需按序的读音，TreeMap（键与节点）在写出 bin 之前即可回收
+            entries = primaryMap.size();
+            final Pinyin[][] values = primaryMap.values().toArray(new Pinyin[0][]);
+            primaryMap = null;
+            // save to bin，未取得锁时（等待超时或无法创建锁文件）不写入
+            if (null != lock && trie.size() == entries) {
+                st = System.currentTimeMillis();
+                saveBin(binFile, sourcesHash, minKeyChar, boundaryInKeys, trie, values, supplementary);
+                logger.info("saveBin used time: " + (System.currentTimeMillis() - st));
+            }
+            loaded(event, reload, bytes[1] > 0 ? PinyinMetrics.Source.USER_TXT : PinyinMetrics.Source.TXT,
+                    entries + supplementary.size(), bytes[0] + bytes[1], startNanos);
+            return false;
+        } finally {
+            if (null != lock) {
+                try {
+                    lock.acquiredBy().close();
+                } catch (IOException e) {
+                    logger.warn("release lock failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 生效的词典，首次调用时加载
+     */
+    private DoubleArrayTrieByAhoCorasick<Pinyin[]> dictionaryTrie() {
+        final DoubleArrayTrieByAhoCorasick<Pinyin[]> trie = getDictionaryTrie();
+        final DoubleArrayTrieByAhoCorasick<Pinyin[]> imageTrie = this.imageTrie;
+        return null != imageTrie ? imageTrie : trie;
+    }
+
+    /**
+     * 取得缓存目录的跨进程锁，最多等待 {@link #LOCK_TIMEOUT_MILLIS}
+     *
+     * @return 锁，超时或无法加锁时为 null
+     */
+    private static FileLock lockCache(Path lockFile) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            final long deadline = System.currentTimeMillis() + LOCK_TIMEOUT_MILLIS;
+            boolean waited = false;
+            while (true) {
+                final FileLock lock = channel.tryLock();
+                if (null != lock) {
+                    if (waited) logger.info("pinyin cache lock acquired after waiting");
+                    return lock;
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    logger.warn("pinyin cache is locked by another process, build without saving");
+                    break;
+                }
+                waited = true;
+                Thread.sleep(50);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | OverlappingFileLockException e) {
+            logger.warn("lock pinyin cache failed", e);
+        }
+        if (null != channel) {
             try {
-                final ByteArray byteArray = BytesHelper.createByteArray(binFile);
-                if (null != byteArray) {
-                    final Pinyin[] valueEnums = Pinyin.values();
-                    final int totalSize = byteArray.nextInt();
-                    final Pinyin[][] valueArray = new Pinyin[totalSize][];
-                    for (int i = 0; i < valueArray.length; ++i) {
-                        final int itemSize = byteArray.nextInt();
-                        valueArray[i] = new Pinyin[itemSize];
-                        for (int j = 0; j < itemSize; ++j) {
-                            valueArray[i][j] = valueEnums[byteArray.nextInt()];
-                        }
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 库版本：模块路径上取模块描述的版本（编译时 --module-version），类路径上取 jar 清单的 Implementation-Version，都没有时为 null
+     */
+    private static String libraryVersion() {
+        final ModuleDescriptor descriptor = PinyinConvertor.class.getModule().getDescriptor();
+        if (null != descriptor) {
+            final Optional<String> version = descriptor.rawVersion();
+            if (version.isPresent()) return version.get();
+        }
+        return PinyinConvertor.class.getPackage().getImplementationVersion();
+    }
+
+    /**
+     * 来源内容的哈希：库版本、bin 格式、拼音数，以及 data.txt 与 pinyin.txt 的 xxHash64（不存在时为 -1）
+     */
+    private long sourcesHash(URLConnection txtFileDefault, Path txtFileManaged) {
+        final long st = System.currentTimeMillis();
+        final XxHash64 hash = new XxHash64(BIN_FORMAT);
+        final String version = libraryVersion();
+        final byte[] versionBytes = String.valueOf(version).getBytes(StandardCharsets.UTF_8);
+        hash.update(versionBytes, 0, versionBytes.length).update(Pinyin.values().length);
+        if (defaultSourceHash == 0 && null != txtFileDefault) {
+            // 另开连接，txtFileDefault 的输入流留给 _load
+            try (InputStream stream = txtFileDefault.getURL().openStream()) {
+                defaultSourceHash = new XxHash64(0).update(stream).digest();
+            } catch (IOException e) {
+                logger.warn("hash data.txt failed", e);
+            }
+        }
+        hash.update(defaultSourceHash);
+        long managedHash = -1;
+        if (FileHelper.exists(txtFileManaged)) {
+            try {
+                final long size = Files.size(txtFileManaged);
+                final long modified = Files.getLastModifiedTime(txtFileManaged).toMillis();
+                final SourceHash cached = managedSourceHash;
+                if (null != cached && cached.size == size && cached.modified == modified) {
+                    managedHash = cached.hash;
+                } else {
+                    try (InputStream stream = Files.newInputStream(txtFileManaged)) {
+                        managedHash = new XxHash64(0).update(stream).digest();
                     }
-                    trie.load(byteArray, valueArray);
-                    return;
+                    managedSourceHash = new SourceHash(size, modified, managedHash);
                 }
-            } finally {
-                logger.info("loadBin used time: " + (System.currentTimeMillis() - st));
+            } catch (IOException e) {
+                logger.warn("hash pinyin.txt failed", e);
             }
         }
-        // load primary txt
-        final TreeMap<String, Pinyin[]> primaryMap = new TreeMap<>();
-        // 加载默认数据
-        _load(primaryMap, txtFileDefault);
-        // 加载管理的数据，可以覆盖默认数据
-        _load(primaryMap, txtFileManaged);
-
-        // build to trie
-        long st = System.currentTimeMillis();
-        trie.build(primaryMap);
-        logger.info("trie.build + " + (System.currentTimeMillis() - st));
-        // save to bin
-        FileHelper.makeParents(binFile);
-        st = System.currentTimeMillis();
-        if (trie.size() == primaryMap.size()) {
-            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(binFile)))) {
-                out.writeInt(primaryMap.size());
-                Pinyin[] value;
-                for (Map.Entry<String, Pinyin[]> entry : primaryMap.entrySet()) {
-                    value = entry.getValue();
+        hash.update(managedHash);
+        logger.info("sourcesHash used time: " + (System.currentTimeMillis() - st));
+        return hash.digest();
+    }
+
+    /**
+     * 从 bin 文件加载，校验和不符、格式不对或来源内容已变化时返回 -1
+     *
+     * @return 词条数
+     */
+    private int loadBin(DoubleArrayTrieByAhoCorasick<Pinyin[]> trie, Path binFile, long sourcesHash) {
+        final long st = System.currentTimeMillis();
+        try {
+            final byte[] bytes = readVerified(binFile);
+            if (null == bytes) return -1;
+            final ByteArray byteArray = new ByteArray(bytes);
+            if (byteArray.nextInt() != BIN_FORMAT) return -1;
+            final long binSourcesHash = (long) byteArray.nextInt() << 32 | (byteArray.nextInt() & 0xFFFFFFFFL);
+            if (binSourcesHash != sourcesHash) {
+                logger.info("pinyin sources changed, rebuild");
+                return -1;
+            }
+            final char minKeyChar = (char) byteArray.nextInt();
+            final boolean boundaryInKeys = byteArray.nextInt() != 0;
+            final Pinyin[] valueEnums = Pinyin.values();
+            final SupplementaryTable supplementary = new SupplementaryTable();
+            for (int n = byteArray.nextInt(); n > 0; n--) {
+                final int codePoint = byteArray.nextInt();
+                final Pinyin[] value = new Pinyin[byteArray.nextInt()];
+                for (int j = 0; j < value.length; ++j) {
+                    value[j] = valueEnums[byteArray.nextInt()];
+                }
+                supplementary.put(codePoint, value);
+            }
+            final int totalSize = byteArray.nextInt();
+            final Pinyin[][] valueArray = new Pinyin[totalSize][];
+            final Pinyin[][] singles = new Pinyin[valueEnums.length][];
+            for (int i = 0; i < valueArray.length; ++i) {
+                final int itemSize = byteArray.nextInt();
+                if (itemSize == 1) {
+                    // 单音的词条共用同一数组
+                    final int ordinal = byteArray.nextInt();
+                    Pinyin[] single = singles[ordinal];
+                    if (null == single) single = singles[ordinal] = new Pinyin[]{valueEnums[ordinal]};
+                    valueArray[i] = single;
+                    continue;
+                }
+                valueArray[i] = new Pinyin[itemSize];
+                for (int j = 0; j < itemSize; ++j) {
+                    // 补充平面汉字的低代理位置为 -1
+                    final int ordinal = byteArray.nextInt();
+                    valueArray[i][j] = ordinal < 0 ? null : valueEnums[ordinal];
+                }
+            }
+            lowerSkipLimit(minKeyChar);
+            if (boundaryInKeys) this.boundaryInKeys = true;
+            trie.load(byteArray, valueArray);
+            this.supplementary = supplementary;
+            return totalSize + supplementary.size();
+        } catch (Exception e) {
+            logger.warn("loadBin failed", e);
+            return -1;
+        } finally {
+            logger.info("loadBin used time: " + (System.currentTimeMillis() - st));
+        }
+    }
+
+    /**
+     * 读取 bin 文件并校验末尾的 CRC32C
+     *
+     * @return 文件内容，不存在或校验失败时为 null
+     */
+    private static byte[] readVerified(Path binFile) throws IOException {
+        if (!FileHelper.exists(binFile)) return null;
+        final byte[] bytes = Files.readAllBytes(binFile);
+        if (bytes.length < Long.BYTES) return null;
+        final CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length - Long.BYTES);
+        if (crc.getValue() != ByteBuffer.wrap(bytes).getLong(bytes.length - Long.BYTES)) {
+            logger.warn("pinyin cache checksum mismatch, rebuild: " + binFile);
+            return null;
+        }
+        return bytes;
+    }
+
+    /**
+     * 先写入同目录的临时文件，末尾附 CRC32C，落盘后原子地替换 bin 文件，读者不会看到写了一半的文件
+     */
+    private static void saveBin(Path binFile, long sourcesHash, char minKeyChar, boolean boundaryInKeys,
+                                DoubleArrayTrieByAhoCorasick<Pinyin[]> trie, Pinyin[][] values, SupplementaryTable supplementary) {
+        final Path tmpFile = binFile.resolveSibling(binFile.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        try {
+            final CRC32C crc = new CRC32C();
+            try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(Channels.newOutputStream(channel), crc)))) {
+                out.writeInt(BIN_FORMAT);
+                out.writeLong(sourcesHash);
+                out.writeInt(minKeyChar);
+                out.writeInt(boundaryInKeys ? 1 : 0);
+                supplementary.save(out);
+                out.writeInt(values.length);
+                for (Pinyin[] value : values) {
                     out.writeInt(value.length);
                     for (Pinyin pinyin : value) {
-                        out.writeInt(pinyin.ordinal());
+                        out.writeInt(null == pinyin ? -1 : pinyin.ordinal());
                     }
                 }
                 trie.save(out);
-            } catch (Exception e) {
-                e.printStackTrace();
+                out.flush();
+                // 校验和本身不计入
+                final ByteBuffer footer = ByteBuffer.allocate(Long.BYTES).putLong(0, crc.getValue());
+                while (footer.hasRemaining()) channel.write(footer);
+                channel.force(true);
+            }
+            try {
+                Files.move(tmpFile, binFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile, binFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (Exception e) {
+            logger.warn("saveBin failed", e);
+            try {
+                Files.deleteIfExists(tmpFile);
+            } catch (IOException ignored) {
             }
         }
-        logger.info("saveBin used time: " + (System.currentTimeMillis() - st));
     }
 
-    private void _load(TreeMap<String, Pinyin[]> primaryMap, Object source) {
+    private void loaded(DictionaryEvent event, boolean reload, PinyinMetrics.Source source, int entries, long bytes, long startNanos) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = source.name();
+            event.entries = entries;
+            event.bytes = bytes;
+            event.fromBin = source == PinyinMetrics.Source.BIN;
+            event.commit();
+        }
+        final PinyinMetrics metrics = this.metrics;
+        if (metrics == PinyinMetrics.NONE) return;
+        final long nanos = System.nanoTime() - startNanos;
+        if (reload) metrics.onReload(source, entries, bytes, nanos);
+        else metrics.onLoad(source, entries, bytes, nanos);
+    }
+
+    /**
+     * 在新词典生效之前调用
+     */
+    private void lowerSkipLimit(char minKeyChar) {
+        if (minKeyChar < skipLimit) skipLimit = minKeyChar;
+    }
+
+    /**
+     * 大文本能否在边界字符处拆分后分别转换，首次调用时加载词典。
+     * 设置了消歧器时不可拆分：消歧以相邻的原始字符（包括标点）为上下文，段首、段尾会失去这些上下文
+     */
+    final boolean splittable() {
+        dictionaryTrie();
+        return !boundaryInKeys && null == disambiguator;
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 解析内置数据与用户数据（后者可以覆盖前者）；读音的共用表只在解析期间存在
+     *
+     * @param bytes 输出两个来源的字节数
+     */
+    private TreeMap<String, Pinyin[]> parseSources(URLConnection txtFileDefault, Path txtFileManaged, long[] bytes) {
+        final TreeMap<String, Pinyin[]> primaryMap = new TreeMap<>();
+        final Map<String, Pinyin[]> interned = new HashMap<>();
+        bytes[0] = _load(primaryMap, txtFileDefault, interned);
+        bytes[1] = _load(primaryMap, txtFileManaged, interned);
+        return primaryMap;
+    }
+
+    /**
+     * 逐行解析来源并直接放入 primaryMap，不经过中间的字符串词典
+     *
+     * @param interned 读音文本到读音数组的映射，多个来源共用
+     * @return 来源的字节数，来源不存在时为 0
+     */
+    private long _load(TreeMap<String, Pinyin[]> primaryMap, Object source, Map<String, Pinyin[]> interned) {
         if (null == source) {
             logger.warn("source is null");
-            return;
+            return 0;
         }
-
-        final StringDictionary dictionary = new StringDictionary("=");
-        //
+        long bytes = 0;
         String sourcePath = null;
-        if (source instanceof Path path && FileHelper.exists(path)) {
-            sourcePath = path.toString();
-            try (InputStream stream = Files.newInputStream(path)) {
-                dictionary.load(stream);
-            } catch (IOException e) {
-                logger.warn("load Path failed", e);
-            }
-        } else if (source instanceof URLConnection urlConn) {
-            sourcePath = urlConn.getURL().toString();
-            try (InputStream stream = new BufferedInputStream(urlConn.getInputStream())) {
-                dictionary.load(stream);
-            } catch (IOException e) {
-                logger.warn("load URL failed", e);
+        InputStream stream = null;
+        try {
+            if (source instanceof Path path && FileHelper.exists(path)) {
+                sourcePath = path.toString();
+                bytes = sizeOf(path);
+                stream = Files.newInputStream(path);
+            } else if (source instanceof URLConnection urlConn) {
+                sourcePath = urlConn.getURL().toString();
+                bytes = urlConn.getContentLengthLong();
+                stream = urlConn.getInputStream();
             }
-        }
-        //
-        final String finalSourcePath = sourcePath;
-        dictionary.walkEntries((k, v) -> {
-            try {
-                final Object[] tmpArr = v.split(",");
-                final Pinyin[] valArr = new Pinyin[tmpArr.length];
-                for (int i = 0; i < tmpArr.length; ++i) {
-                    valArr[i] = Pinyin.valueOf((String) tmpArr[i]);
+            if (null == stream) return bytes;
+            final String finalSourcePath = sourcePath;
+            PinyinTxtParser.parse(new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8), 64 * 1024),
+                    primaryMap, interned, (line, e) -> logger.warn("拼音词典" + finalSourcePath + "有问题在【" + line + "】", e));
+        } catch (IOException e) {
+            logger.warn("load " + sourcePath + " failed", e);
+        } finally {
+            if (null != stream) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
                 }
-                primaryMap.put(k, valArr);
-            } catch (Exception e) {
-                logger.warn("拼音词典" + finalSourcePath + "有问题在【" + k + "=" + v + "】", e);
             }
-        });
+        }
+        return bytes;
     }
 
     public final List<Map.Entry<Character, Pinyin>> convert(String string) {
         return convert(string.toCharArray());
     }
 
-    public final List<Map.Entry<Character, Pinyin>> convert(char... chars) {
-        final Pinyin[][] wordNet = new Pinyin[chars.length][];
-        getDictionaryTrie().parseText(chars, (begin, end, value) -> {
-            int length = end - begin;
-            if (wordNet[begin] == null || length > wordNet[begin].length) {
-                wordNet[begin] = length == 1 ? new Pinyin[]{value[0]} : value;
+    /**
+     * 设置多音字消歧器，null 表示关闭消歧
+     *
+     * @param disambiguator 消歧器，参见 {@link PinyinDisambiguator#loadDefault()}
+     */
+    public final void setDisambiguator(PinyinDisambiguator disambiguator) {
+        this.disambiguator = disambiguator;
+        invalidateResults();
+    }
+
+    /**
+     * 递增缓存世代并清空缓存，须在新的词典或消歧器生效之后调用
+     */
+    private void invalidateResults() {
+        cacheGeneration.incrementAndGet();
+        final PinyinResultCache resultCache = this.resultCache;
+        if (null != resultCache) resultCache.invalidateAll();
+    }
+
+    /**
+     * 当前的缓存世代，须在转换之前取得；生效的词典实例变化时（重新加载后替换）先递增
+     */
+    private long cacheGeneration() {
+        final DoubleArrayTrieByAhoCorasick<Pinyin[]> trie = dictionaryTrie();
+        if (trie != generationTrie) {
+            synchronized (cacheGeneration) {
+                if (trie != generationTrie) {
+                    generationTrie = trie;
+                    cacheGeneration.incrementAndGet();
+                }
             }
-        });
+        }
+        return cacheGeneration.get();
+    }
+
+    public final PinyinDisambiguator getDisambiguator() {
+        return disambiguator;
+    }
+
+    /**
+     * 设置监控回调，null 表示关闭
+     *
+     * @param metrics 监控回调，如 {@link PinyinMetricsRecorder}
+     */
+    public final void setMetrics(PinyinMetrics metrics) {
+        this.metrics = null == metrics ? PinyinMetrics.NONE : metrics;
+    }
+
+    public final PinyinMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 设置未登录字统计，null 表示关闭
+     *
+     * @param oovRecorder 未登录字统计
+     */
+    public final void setOovRecorder(PinyinOovRecorder oovRecorder) {
+        this.oovRecorder = oovRecorder;
+    }
+
+    public final PinyinOovRecorder getOovRecorder() {
+        return oovRecorder;
+    }
+
+    /**
+     * 设置结果缓存，用于 {@link #pinyin(String, PinyinFormat, String)} 与 {@link #join(String, PinyinFormat, String, boolean)}，
+     * null 表示关闭
+     *
+     * @param resultCache 结果缓存
+     */
+    public final void setResultCache(PinyinResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public final PinyinResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * 每个字一项；补充平面汉字（代理对）只有高代理一项，读音为该字的读音
+     */
+    public final List<Map.Entry<Character, Pinyin>> convert(char... chars) {
+        final Pinyin[][] wordNet = wordNet(chars);
         //
         final List<Map.Entry<Character, Pinyin>> result = new ArrayList<>(chars.length);
         for (int i = 0; i < wordNet.length; ) {
@@ -164,10 +642,302 @@ public class PinyinConvertor extends AbstractDictionaryTrieApp<Pinyin[]> {
                 result.add(new AbstractMap.SimpleEntry<>(chars[i++], null));
                 continue;
             }
+            if (wordNet[i] == TAIL) {
+                i++;
+                continue;
+            }
             for (Pinyin itm : wordNet[i]) {
+                if (null == itm) {
+                    i++;
+                    continue;
+                }
                 result.add(new AbstractMap.SimpleEntry<>(chars[i++], itm));
             }
         }
         return result;
     }
+
+    /**
+     * 转换为拼音序列，每字约 2 字节，各格式按需生成
+     *
+     * @param text 要转换的文字
+     * @return 拼音序列
+     */
+    public final PinyinSequence sequence(CharSequence text) {
+        final String source = text.toString();
+        return PinyinSequence.of(source, wordNet(source.toCharArray()));
+    }
+
+    /**
+     * 转换文字为 separator 分隔的拼音，拼音与其它字符之间以一个 separator 分开，非拼音字符原样保留
+     *
+     * @param text      要转换的文字
+     * @param format    拼音格式
+     * @param separator 分隔符
+     * @return 拼音
+     */
+    public final String pinyin(String text, PinyinFormat format, String separator) {
+        final PinyinResultCache resultCache = this.resultCache;
+        final PinyinResultCache.Key key = null == resultCache ? null : resultCache.key(text, format, separator, PinyinResultCache.PINYIN, cacheGeneration());
+        if (null != key) {
+            String result = resultCache.get(key);
+            if (null == result) {
+                result = pinyin0(text, format, separator);
+                resultCache.put(key, result);
+            }
+            return result;
+        }
+        return pinyin0(text, format, separator);
+    }
+
+    private String pinyin0(String text, PinyinFormat format, String separator) {
+        final char[] chars = text.toCharArray();
+        final StringBuilder result = new StringBuilder(chars.length * 6);
+        final PinyinRenderer renderer = renderer(format, separator);
+        renderer.pinyin(chars, wordNet(chars), renderer.output(result));
+        return result.toString();
+    }
+
+    /**
+     * 转换文字为每个字一项、以 separator 连接的拼音
+     *
+     * @param text       要转换的文字
+     * @param format     拼音格式
+     * @param separator  分隔符
+     * @param remainNone 没有拼音的字（如标点）是否用 none 表示，否则保留原字符
+     * @return 拼音
+     */
+    public final String join(String text, PinyinFormat format, String separator, boolean remainNone) {
+        return join(text, format, separator, remainNone, false);
+    }
+
+    /**
+     * 转换文字为以 separator 连接的拼音，每个字一项；runs 为 true 时连续的非中文字母、数字（如 iPhone、2022）合为一项
+     *
+     * @param text       要转换的文字
+     * @param format     拼音格式
+     * @param separator  分隔符
+     * @param remainNone 没有拼音的字（如标点）是否用 none 表示，否则保留原字符；合并的一项只输出一个 none
+     * @param runs       是否合并连续的非中文字母、数字
+     * @return 拼音
+     */
+    public final String join(String text, PinyinFormat format, String separator, boolean remainNone, boolean runs) {
+        final PinyinResultCache resultCache = this.resultCache;
+        final PinyinResultCache.Key key = null == resultCache ? null : resultCache.key(text, format, separator,
+                runs ? (remainNone ? PinyinResultCache.JOIN_RUNS_REMAIN_NONE : PinyinResultCache.JOIN_RUNS)
+                        : (remainNone ? PinyinResultCache.JOIN_REMAIN_NONE : PinyinResultCache.JOIN),
+                cacheGeneration());
+        if (null != key) {
+            String result = resultCache.get(key);
+            if (null == result) {
+                result = join0(text, format, separator, remainNone, runs);
+                resultCache.put(key, result);
+            }
+            return result;
+        }
+        return join0(text, format, separator, remainNone, runs);
+    }
+
+    private String join0(String text, PinyinFormat format, String separator, boolean remainNone, boolean runs) {
+        final char[] chars = text.toCharArray();
+        final StringBuilder result = new StringBuilder(chars.length * 6);
+        final PinyinRenderer renderer = renderer(format, separator);
+        renderer.join(chars, wordNet(chars), remainNone, runs, renderer.output(result));
+        return result.toString();
+    }
+
+    /**
+     * 与 {@link #pinyin(String, PinyinFormat, String)} 相同，但以 UTF-8 直接写入 out，不生成中间字符串
+     *
+     * @param text      要转换的文字
+     * @param format    拼音格式
+     * @param separator 分隔符
+     * @param out       输出缓冲区，空间不足时抛出 {@link java.nio.BufferOverflowException}
+     */
+    public final void pinyin(CharSequence text, PinyinFormat format, String separator, ByteBuffer out) {
+        pinyin(text, format, separator, Utf8Sink.of(out));
+    }
+
+    /**
+     * 与 {@link #pinyin(String, PinyinFormat, String)} 相同，但以 UTF-8 直接写入 out，不生成中间字符串
+     *
+     * @param text      要转换的文字
+     * @param format    拼音格式
+     * @param separator 分隔符
+     * @param out       输出流，写出后不会关闭
+     * @throws IOException 写出失败
+     */
+    public final void pinyin(CharSequence text, PinyinFormat format, String separator, OutputStream out) throws IOException {
+        try {
+            pinyin(text, format, separator, Utf8Sink.of(out));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 与 {@link #pinyin(String, PinyinFormat, String)} 相同，但以 UTF-8 直接写入 out，不生成中间字符串
+     *
+     * @param text      要转换的文字
+     * @param format    拼音格式
+     * @param separator 分隔符
+     * @param out       输出通道，写出后不会关闭
+     * @throws IOException 写出失败
+     */
+    public final void pinyin(CharSequence text, PinyinFormat format, String separator, WritableByteChannel out) throws IOException {
+        try {
+            pinyin(text, format, separator, Utf8Sink.of(out));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 与 {@link #pinyin(String, PinyinFormat, String)} 相同，但追加到 out，供复用缓冲区的调用方使用
+     */
+    final void pinyin(CharSequence text, PinyinFormat format, String separator, StringBuilder out) {
+        if (null != resultCache) {
+            out.append(pinyin(text.toString(), format, separator));
+            return;
+        }
+        final char[] chars = toChars(text);
+        final PinyinRenderer renderer = renderer(format, separator);
+        renderer.pinyin(chars, wordNet(chars), renderer.output(out));
+    }
+
+    private void pinyin(CharSequence text, PinyinFormat format, String separator, Utf8Sink out) {
+        final char[] chars = toChars(text);
+        final PinyinRenderer renderer = renderer(format, separator);
+        renderer.pinyin(chars, wordNet(chars), renderer.output(out));
+    }
+
+    static char[] toChars(CharSequence text) {
+        if (text instanceof String str) {
+            return str.toCharArray();
+        }
+        final char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = text.charAt(i);
+        }
+        return chars;
+    }
+
+    final PinyinRenderer renderer(PinyinFormat format, String separator) {
+        final ConcurrentHashMap<String, PinyinRenderer> map = renderers.get(format);
+        final PinyinRenderer renderer = map.get(separator);
+        return null != renderer ? renderer : map.computeIfAbsent(separator, sep -> new PinyinRenderer(format, sep));
+    }
+
+    /**
+     * 最长匹配，wordNet[i] 为从 i 开始的词的读音，未匹配的位置为 null；
+     * 补充平面汉字的读音在高代理位置，其后的低代理位置为 {@link #TAIL}；
+     * 多字词条中的补充平面汉字同样如此，词条的读音数组中其低代理位置为 null
+     */
+    final Pinyin[][] wordNet(char[] chars) {
+        final DoubleArrayTrieByAhoCorasick<Pinyin[]> trie = dictionaryTrie();
+        final PinyinMetrics metrics = this.metrics;
+        final long startNanos = metrics == PinyinMetrics.NONE ? 0 : System.nanoTime();
+        final LargeConversionEvent event = new LargeConversionEvent();
+        event.begin();
+        final Pinyin[][] wordNet = new Pinyin[chars.length][];
+        final PinyinDisambiguator disambiguator = this.disambiguator;
+        final Pinyin[][] polyphones = null == disambiguator ? null : new Pinyin[chars.length][];
+        // 较长的、不可能参与匹配的段落（字符都小于 skipLimit）不送入词典匹配，只匹配其间的片段
+        final SupplementaryTable supplementary = this.supplementary;
+        final char limit = this.skipLimit;
+        int segment = 0;
+        for (int i = 0; i < chars.length; ) {
+            final char ch = chars[i];
+            if (ch >= limit) {
+                // 补充平面汉字按码位查表
+                if (Character.isHighSurrogate(ch) && i + 1 < chars.length && Character.isLowSurrogate(chars[i + 1])) {
+                    final Pinyin[] value = supplementary.get(Character.toCodePoint(ch, chars[i + 1]));
+                    if (null != value) {
+                        wordNet[i] = new Pinyin[]{value[0]};
+                        wordNet[i + 1] = TAIL;
+                    }
+                    i += 2;
+                    continue;
+                }
+                i++;
+                continue;
+            }
+            final int runEnd = CjkScanner.skipBelow(chars, i, chars.length, limit);
+            if (runEnd - i >= MIN_SKIP) {
+                if (i > segment) parseText(trie, chars, segment, i, wordNet, polyphones);
+                segment = runEnd;
+            }
+            i = runEnd;
+        }
+        if (segment < chars.length) parseText(trie, chars, segment, chars.length, wordNet, polyphones);
+        if (null != disambiguator) {
+            disambiguator.disambiguate(chars, wordNet, polyphones);
+        }
+        final PinyinOovRecorder oovRecorder = this.oovRecorder;
+        if (null != oovRecorder) {
+            oovRecorder.record(chars, wordNet);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.length = chars.length;
+            event.matches = countMatches(wordNet);
+            event.commit();
+        }
+        if (metrics != PinyinMetrics.NONE) {
+            metrics.onConvert(chars.length, countOov(chars, wordNet), System.nanoTime() - startNanos);
+        }
+        return wordNet;
+    }
+
+    private static void parseText(DoubleArrayTrieByAhoCorasick<Pinyin[]> trie, char[] chars, int from, int to,
+                                  Pinyin[][] wordNet, Pinyin[][] polyphones) {
+        final char[] text = from == 0 && to == chars.length ? chars : Arrays.copyOfRange(chars, from, to);
+        trie.parseText(text, (begin, end, value) -> {
+            final int start = from + begin;
+            final int length = end - begin;
+            if (wordNet[start] == null || length > wordNet[start].length) {
+                wordNet[start] = length == 1 ? new Pinyin[]{value[0]} : value;
+            }
+            if (length == 1 && null != polyphones) {
+                polyphones[start] = value;
+            }
+        });
+    }
+
+    /**
+     * 统计词典匹配数
+     */
+    private static int countMatches(Pinyin[][] wordNet) {
+        int matches = 0;
+        for (int i = 0; i < wordNet.length; ) {
+            final Pinyin[] entry = wordNet[i];
+            if (null == entry || entry == TAIL) {
+                i++;
+            } else {
+                matches++;
+                i += entry.length;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 统计没有拼音的汉字数
+     */
+    private static int countOov(char[] chars, Pinyin[][] wordNet) {
+        int oov = 0;
+        for (int i = 0; i < wordNet.length; ) {
+            final Pinyin[] entry = wordNet[i];
+            if (null == entry) {
+                final int codePoint = Character.codePointAt(chars, i);
+                if (PinyinUtils.isHan(codePoint)) oov++;
+                i += Character.charCount(codePoint);
+            } else if (entry == TAIL) {
+                i++;
+            } else {
+                i += entry.length;
+            }
+        }
+        return oov;
+    }
 }
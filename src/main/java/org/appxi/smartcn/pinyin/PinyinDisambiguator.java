@@ -0,0 +1,232 @@
+package org.appxi.smartcn.pinyin;
+
+import org.appxi.smartcn.util.SmartCNHelper;
+import org.appxi.util.FileHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 多音字消歧（可选）。
+ * <p>
+ * 在词典最长匹配之后，对单字匹配且有多个读音的位置，根据上下文模型（前字/后字/前一读音）
+ * 用 Viterbi 算法选择最优读音；多字词的读音仍以词典为准。
+ * <p>
+ * 模型由 {@link PinyinModelTrainer} 离线训练生成，以内存映射方式加载，查询时不产生对象分配。
+ * 模型文件结构（大端）：MAGIC, VERSION, capacity, long[capacity] 键, float[capacity] 值，
+ * 键为 0 表示空槽，线性探测。
+ */
+public final class PinyinDisambiguator {
+    private static final Logger logger = LoggerFactory.getLogger(PinyinDisambiguator.class);
+
+    static final int MAGIC = 0x50594D31;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 12;
+
+    /**
+     * 特征类型：字 -> 读音
+     */
+    static final long TYPE_UNIGRAM = 1;
+    /**
+     * 特征类型：(前字, 字) -> 读音
+     */
+    static final long TYPE_LEFT = 2;
+    /**
+     * 特征类型：(字, 后字) -> 读音
+     */
+    static final long TYPE_RIGHT = 3;
+    /**
+     * 特征类型：(前一读音, 字) -> 读音
+     */
+    static final long TYPE_TRANSITION = 4;
+    /**
+     * 读音位取此值时表示该字的平滑下限，同时标记该字为模型已知的多音字
+     */
+    static final int FLOOR = 0xFFFF;
+    /**
+     * 上下文不存在（文本边界或无读音）时使用的占位
+     */
+    static final int NONE = 0xFFFE;
+
+    static long key(long type, int a, int b, int reading) {
+        return type << 48 | (long) (a & 0xFFFF) << 32 | (long) (b & 0xFFFF) << 16 | (reading & 0xFFFF);
+    }
+
+    static int slot(long key, int mask) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private final ByteBuffer buffer;
+    private final int mask;
+    private final int valuesOffset;
+
+    private PinyinDisambiguator(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("not a pinyin model");
+        }
+        final int capacity = buffer.getInt(8);
+        if (Integer.bitCount(capacity) != 1 || buffer.limit() < HEADER_SIZE + capacity * 12L) {
+            throw new IllegalArgumentException("broken pinyin model");
+        }
+        this.buffer = buffer;
+        this.mask = capacity - 1;
+        this.valuesOffset = HEADER_SIZE + capacity * 8;
+    }
+
+    /**
+     * 以内存映射方式加载模型
+     *
+     * @param file 模型文件
+     * @return 消歧器
+     * @throws IOException 读取失败
+     */
+    public static PinyinDisambiguator load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new PinyinDisambiguator(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * 加载默认位置（与 pinyin.bin 同目录的 pinyin.model）的模型
+     *
+     * @return 消歧器，模型不存在或无效时为 null
+     */
+    public static PinyinDisambiguator loadDefault() {
+        final Path file = defaultModelFile();
+        if (!FileHelper.exists(file)) {
+            return null;
+        }
+        try {
+            return load(file);
+        } catch (Exception e) {
+            logger.warn("load pinyin model failed: " + file, e);
+            return null;
+        }
+    }
+
+    static Path defaultModelFile() {
+        return SmartCNHelper.resolveCache("pinyin.model");
+    }
+
+    private float lookup(long key, float defaultValue) {
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            final long k = buffer.getLong(HEADER_SIZE + (i << 3));
+            if (k == key) return buffer.getFloat(valuesOffset + (i << 2));
+            if (k == 0) return defaultValue;
+        }
+    }
+
+    private boolean isKnown(char ch) {
+        return !Float.isNaN(lookup(key(TYPE_UNIGRAM, ch, 0, FLOOR), Float.NaN));
+    }
+
+    private float emission(char[] chars, int idx, int reading) {
+        final char ch = chars[idx];
+        float score = lookup(key(TYPE_UNIGRAM, ch, 0, reading), Float.NaN);
+        if (Float.isNaN(score)) score = lookup(key(TYPE_UNIGRAM, ch, 0, FLOOR), 0);
+        final int prevChar = idx > 0 ? chars[idx - 1] : NONE;
+        final int nextChar = idx + 1 < chars.length ? chars[idx + 1] : NONE;
+        score += lookup(key(TYPE_LEFT, prevChar, ch, reading), 0);
+        score += lookup(key(TYPE_RIGHT, ch, nextChar, reading), 0);
+        return score;
+    }
+
+    private float transition(int prevReading, char ch, int reading) {
+        return lookup(key(TYPE_TRANSITION, prevReading, ch, reading), 0);
+    }
+
+    /**
+     * 对词网中的多音字重新选择读音
+     *
+     * @param chars      文本
+     * @param wordNet    词网，wordNet[i] 为从 i 开始的最长匹配的读音
+     * @param polyphones 单字匹配的全部候选读音，polyphones[i] 为 chars[i] 的词典读音
+     */
+    void disambiguate(char[] chars, Pinyin[][] wordNet, Pinyin[][] polyphones) {
+        int prevReading = NONE;
+        for (int i = 0; i < wordNet.length; ) {
+            final Pinyin[] entry = wordNet[i];
+            if (null == entry) {
+                prevReading = NONE;
+                i++;
+                continue;
+            }
+            if (entry == PinyinConvertor.TAIL) {
+                i++;
+                continue;
+            }
+            if (!isAmbiguous(chars[i], entry, polyphones[i])) {
+                // 以补充平面汉字结尾的词条，最后一项为低代理位置
+                final Pinyin last = entry[entry.length - 1];
+                prevReading = (null != last ? last : entry[entry.length - 2]).ordinal();
+                i += entry.length;
+                continue;
+            }
+            int end = i + 1;
+            while (end < wordNet.length && null != wordNet[end] && isAmbiguous(chars[end], wordNet[end], polyphones[end])) {
+                end++;
+            }
+            prevReading = decode(chars, i, end, wordNet, polyphones, prevReading);
+            i = end;
+        }
+    }
+
+    private boolean isAmbiguous(char ch, Pinyin[] entry, Pinyin[] candidates) {
+        return entry.length == 1 && null != candidates && candidates.length > 1 && isKnown(ch);
+    }
+
+    /**
+     * Viterbi 解码 [from, to) 连续的多音字位置
+     *
+     * @return 最后一个位置选择的读音
+     */
+    private int decode(char[] chars, int from, int to, Pinyin[][] wordNet, Pinyin[][] polyphones, int prevReading) {
+        final int size = to - from;
+        final int[][] backPointers = new int[size][];
+        Pinyin[] candidates = polyphones[from];
+        float[] scores = new float[candidates.length];
+        for (int k = 0; k < candidates.length; k++) {
+            final int reading = candidates[k].ordinal();
+            scores[k] = emission(chars, from, reading) + transition(prevReading, chars[from], reading);
+        }
+        for (int p = 1; p < size; p++) {
+            final int idx = from + p;
+            final Pinyin[] prevCandidates = candidates;
+            candidates = polyphones[idx];
+            final float[] nextScores = new float[candidates.length];
+            final int[] back = new int[candidates.length];
+            for (int k = 0; k < candidates.length; k++) {
+                final int reading = candidates[k].ordinal();
+                float best = Float.NEGATIVE_INFINITY;
+                int bestIdx = 0;
+                for (int j = 0; j < prevCandidates.length; j++) {
+                    final float score = scores[j] + transition(prevCandidates[j].ordinal(), chars[idx], reading);
+                    if (score > best) {
+                        best = score;
+                        bestIdx = j;
+                    }
+                }
+                nextScores[k] = best + emission(chars, idx, reading);
+                back[k] = bestIdx;
+            }
+            backPointers[p] = back;
+            scores = nextScores;
+        }
+        int best = 0;
+        for (int k = 1; k < scores.length; k++) {
+            if (scores[k] > scores[best]) best = k;
+        }
+        final int lastReading = polyphones[to - 1][best].ordinal();
+        for (int p = size - 1; p >= 0; p--) {
+            wordNet[from + p] = new Pinyin[]{polyphones[from + p][best]};
+            if (p > 0) best = backPointers[p][best];
+        }
+        return lastReading;
+    }
+}
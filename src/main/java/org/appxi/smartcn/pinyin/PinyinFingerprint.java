@@ -0,0 +1,303 @@
+package org.appxi.smartcn.pinyin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 文本读音的 64 位指纹，用于同音字替换（如 微信 / 薇信）的去重与聚类。
+ * <p>
+ * 指纹由每个字的音节值直接计算，不生成拼音字符串。音节值是音节规范字符串的 xxHash64，预先按序号算好：
+ * 带声调时为 data.txt 中的写法（如 zhong1），不带声调时为去掉声调的拼音（如 zhong），
+ * 模糊音再把 z/zh、c/ch、s/sh、l/n/r、f/h 与 an/ang、en/eng、in/ing、ian/iang、uan/uang 各视为相同，取合并后的“声母+韵母”。
+ * 音节值只取决于这些字符串，与 {@link Pinyin} 的声明顺序及音节的增减无关，指纹在不同版本、不同进程间保持不变，可以持久化。
+ * 没有拼音的字符按原字符计入，补充平面汉字只计一次。
+ */
+public final class PinyinFingerprint {
+    /**
+     * 读音的比较方式
+     */
+    public enum Mode {
+        /**
+         * 音节与声调都相同
+         */
+        TONE,
+        /**
+         * 忽略声调
+         */
+        TONELESS,
+        /**
+         * 忽略声调，并按常见的模糊音合并声母、韵母
+         */
+        FUZZY,
+    }
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final int TAG_NONE = 0x20000;
+
+    /**
+     * 各比较方式下的音节值，以 Pinyin.ordinal() 为下标
+     */
+    private static final long[] TONED;
+    private static final long[] TONELESS;
+    private static final long[] FUZZY;
+
+    static {
+        final Pinyin[] pinyins = Pinyin.values();
+        TONED = new long[pinyins.length];
+        TONELESS = new long[pinyins.length];
+        FUZZY = new long[pinyins.length];
+        for (Pinyin pinyin : pinyins) {
+            TONED[pinyin.ordinal()] = syllable(pinyin.name());
+            TONELESS[pinyin.ordinal()] = syllable(pinyin.getPinyinWithoutTone());
+            FUZZY[pinyin.ordinal()] = syllable(fuzzy(pinyin.getShengmu()).name() + '+' + fuzzy(pinyin.getYunmu()).name());
+        }
+    }
+
+    private PinyinFingerprint() {
+    }
+
+    /**
+     * 最高位置 1，与没有拼音的字符的值（TAG_NONE | 字符）不会相同
+     */
+    private static long syllable(String canonical) {
+        final byte[] bytes = canonical.getBytes(StandardCharsets.UTF_8);
+        return new XxHash64(0).update(bytes, 0, bytes.length).digest() | Long.MIN_VALUE;
+    }
+
+    private static Shengmu fuzzy(Shengmu shengmu) {
+        return switch (shengmu) {
+            case zh -> Shengmu.z;
+            case ch -> Shengmu.c;
+            case sh -> Shengmu.s;
+            case n, r -> Shengmu.l;
+            case f -> Shengmu.h;
+            default -> shengmu;
+        };
+    }
+
+    private static Yunmu fuzzy(Yunmu yunmu) {
+        return switch (yunmu) {
+            case ang -> Yunmu.an;
+            case eng -> Yunmu.en;
+            case ing -> Yunmu.in;
+            case iang -> Yunmu.ian;
+            case uang -> Yunmu.uan;
+            default -> yunmu;
+        };
+    }
+
+    private static long[] syllables(Mode mode) {
+        return switch (mode) {
+            case TONE -> TONED;
+            case TONELESS -> TONELESS;
+            case FUZZY -> FUZZY;
+        };
+    }
+
+    /**
+     * 计算文本的指纹，在转换词网的同时完成，不生成 {@link PinyinSequence} 或拼音字符串
+     *
+     * @param text 文本
+     * @param mode 读音的比较方式
+     * @return 指纹
+     */
+    public static long of(CharSequence text, Mode mode) {
+        final char[] chars = PinyinConvertor.toChars(text);
+        final Pinyin[][] wordNet = PinyinConvertor.ONE.wordNet(chars);
+        final long[] syllables = syllables(mode);
+        long hash = P3;
+        int units = 0;
+        for (int i = 0; i < chars.length; ) {
+            final Pinyin[] entry = wordNet[i];
+            if (entry == PinyinConvertor.TAIL) {
+                i++;
+            } else if (null == entry) {
+                hash = mix(hash, TAG_NONE | chars[i++]);
+                units++;
+            } else {
+                for (Pinyin pinyin : entry) {
+                    i++;
+                    if (null == pinyin) continue;
+                    hash = mix(hash, syllables[pinyin.ordinal()]);
+                    units++;
+                }
+            }
+        }
+        return finish(hash, units);
+    }
+
+    /**
+     * 由拼音序号计算指纹，与 {@link #of(CharSequence, Mode)} 的结果相同
+     *
+     * @param ordinals 拼音序号，编码同 {@link PinyinSequence}
+     * @param chars    原文，与 ordinals 对齐；为 null 时没有拼音的字都计为同一个占位
+     * @param from     起始位置（含）
+     * @param to       结束位置（不含）
+     */
+    static long of(short[] ordinals, CharSequence chars, int from, int to, Mode mode) {
+        final long[] syllables = syllables(mode);
+        long hash = P3;
+        int units = 0;
+        for (int i = from; i < to; i++) {
+            final short ordinal = ordinals[i];
+            if (ordinal == PinyinSequence.TAIL) continue;
+            hash = mix(hash, ordinal == PinyinSequence.NONE
+                    ? TAG_NONE | (null == chars ? 0 : chars.charAt(i))
+                    : syllables[ordinal]);
+            units++;
+        }
+        return finish(hash, units);
+    }
+
+    private static long mix(long hash, long value) {
+        return Long.rotateLeft(hash ^ value * P2, 27) * P1 + P3;
+    }
+
+    private static long finish(long hash, int units) {
+        hash += units;
+        hash ^= hash >>> 33;
+        hash *= P2;
+        hash ^= hash >>> 29;
+        hash *= P3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    /**
+     * 按读音并行分组，适合大量数据的一次性聚类；组内元素的顺序不确定
+     *
+     * @param items 元素
+     * @param text  取元素的文本
+     * @param mode  读音的比较方式
+     * @return 指纹到同音元素的映射
+     */
+    public static <T> ConcurrentMap<Long, List<T>> groupByHomophone(Collection<T> items,
+                                                                     Function<? super T, ? extends CharSequence> text,
+                                                                     Mode mode) {
+        return items.parallelStream().collect(Collectors.groupingByConcurrent(item -> of(text.apply(item), mode)));
+    }
+
+    /**
+     * 按读音分组一列文本，结果只用基本类型数组：各行的指纹并行计算，行号按指纹做稳定的基数排序
+     *
+     * @param column 列式结果
+     * @param mode   读音的比较方式
+     * @return 分组
+     */
+    public static Groups groupByHomophone(PinyinColumn column, Mode mode) {
+        final int n = column.rows();
+        final long[] fingerprints = new long[n];
+        IntStream.range(0, n).parallel().forEach(row -> fingerprints[row] = column.fingerprint(row, mode));
+        long[] keys = fingerprints.clone();
+        long[] keyBuffer = new long[n];
+        int[] rows = new int[n];
+        int[] rowBuffer = new int[n];
+        for (int row = 0; row < n; row++) rows[row] = row;
+        // 每次 16 位、共 4 次的 LSD 基数排序，按无符号指纹排序，指纹相同的行保持行号升序
+        final int[] counts = new int[1 << 16];
+        for (int shift = 0; shift < Long.SIZE; shift += 16) {
+            Arrays.fill(counts, 0);
+            for (long key : keys) counts[(int) (key >>> shift) & 0xFFFF]++;
+            for (int digit = 0, sum = 0; digit < counts.length; digit++) {
+                final int count = counts[digit];
+                counts[digit] = sum;
+                sum += count;
+            }
+            for (int i = 0; i < n; i++) {
+                final int at = counts[(int) (keys[i] >>> shift) & 0xFFFF]++;
+                keyBuffer[at] = keys[i];
+                rowBuffer[at] = rows[i];
+            }
+            final long[] swapKeys = keys;
+            keys = keyBuffer;
+            keyBuffer = swapKeys;
+            final int[] swapRows = rows;
+            rows = rowBuffer;
+            rowBuffer = swapRows;
+        }
+        int groups = n == 0 ? 0 : 1;
+        for (int i = 1; i < n; i++) {
+            if (keys[i] != keys[i - 1]) groups++;
+        }
+        final int[] offsets = new int[groups + 1];
+        for (int i = 1, group = 1; i < n; i++) {
+            if (keys[i] != keys[i - 1]) offsets[group++] = i;
+        }
+        offsets[groups] = n;
+        return new Groups(fingerprints, rows, offsets);
+    }
+
+    /**
+     * 一列文本按读音分组的结果，列式存放：第 group 组的行号为 rows[offsets[group] .. offsets[group + 1])，
+     * 组按指纹（无符号）升序排列，组内行号升序
+     */
+    public static final class Groups {
+        private final long[] fingerprints;
+        private final int[] rows;
+        private final int[] offsets;
+
+        private Groups(long[] fingerprints, int[] rows, int[] offsets) {
+            this.fingerprints = fingerprints;
+            this.rows = rows;
+            this.offsets = offsets;
+        }
+
+        /**
+         * @return 组数
+         */
+        public int size() {
+            return offsets.length - 1;
+        }
+
+        public long fingerprint(int group) {
+            return fingerprints[rows[offsets[group]]];
+        }
+
+        public int start(int group) {
+            return offsets[group];
+        }
+
+        public int length(int group) {
+            return offsets[group + 1] - offsets[group];
+        }
+
+        /**
+         * @return 第 group 组第 index 行的行号
+         */
+        public int row(int group, int index) {
+            if (index < 0 || index >= length(group)) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + length(group));
+            }
+            return rows[offsets[group] + index];
+        }
+
+        /**
+         * @return 按组排列的行号，不复制
+         */
+        public int[] rows() {
+            return rows;
+        }
+
+        /**
+         * @return 组偏移，长度为组数 + 1，不复制
+         */
+        public int[] offsets() {
+            return offsets;
+        }
+
+        /**
+         * @return 各行的指纹，以行号为下标，不复制
+         */
+        public long[] fingerprints() {
+            return fingerprints;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.appxi.smartcn.pinyin;
+
+import java.util.Locale;
+
+/**
+ * 拼音输出格式
+ */
+public enum PinyinFormat {
+    /**
+     * 纯字母，如 zhong
+     */
+    WITHOUT_TONE {
+        @Override
+        public String format(Pinyin pinyin) {
+            return pinyin.getPinyinWithoutTone();
+        }
+    },
+    /**
+     * 带声调符号，如 zhōng
+     */
+    WITH_TONE_MARK {
+        @Override
+        public String format(Pinyin pinyin) {
+            return pinyin.getPinyinWithToneMark();
+        }
+    },
+    /**
+     * 带声调数字，如 zhong1
+     */
+    WITH_TONE_NUMBER {
+        @Override
+        public String format(Pinyin pinyin) {
+            return pinyin.name();
+        }
+    },
+    /**
+     * 首字母，如 z
+     */
+    FIRST_CHAR {
+        @Override
+        public String format(Pinyin pinyin) {
+            return String.valueOf(pinyin.getFirstChar());
+        }
+    },
+    ;
+
+    /**
+     * 按此格式输出一个拼音
+     *
+     * @param pinyin 拼音
+     * @return 字符串形式
+     */
+    public abstract String format(Pinyin pinyin);
+
+    /**
+     * 命令行与 HTTP 参数中的格式名：toneless、tone-mark、numbered、initials，也接受枚举名
+     */
+    static PinyinFormat parse(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "toneless", "without_tone" -> WITHOUT_TONE;
+            case "tone-mark", "with_tone_mark" -> WITH_TONE_MARK;
+            case "numbered", "with_tone_number" -> WITH_TONE_NUMBER;
+            case "initials", "first_char" -> FIRST_CHAR;
+            default -> throw new IllegalArgumentException("format: " + value);
+        };
+    }
+}
@@ -2,7 +2,7 @@ package org.appxi.smartcn.pinyin;
 
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 public interface PinyinHelper {
     /**
@@ -14,12 +14,20 @@ public interface PinyinHelper {
      * @return 一个字符串，由[拼音][分隔符][拼音]构成
      */
     static String convert(String text, String separator, boolean remainNone) {
-        final List<Map.Entry<Character, Pinyin>> pinyinList = PinyinConvertor.ONE.convert(text);
-        return pinyinList.stream()
-                .map(entry -> null == entry.getValue()
-                        ? (remainNone ? Pinyin.none5.getPinyinWithoutTone() : String.valueOf(entry.getKey()))
-                        : entry.getValue().getPinyinWithoutTone())
-                .collect(Collectors.joining(separator));
+        return PinyinConvertor.ONE.join(text, PinyinFormat.WITHOUT_TONE, separator, remainNone);
+    }
+
+    /**
+     * 转化为拼音，连续的非中文字母、数字（如 iPhone、2022）作为一项，如 iPhone手机 转化为 iPhone shou ji
+     *
+     * @param text       文本
+     * @param separator  分隔符
+     * @param remainNone 有些字没有拼音（如标点），是否保留它们的拼音（true用none表示，false用原字符表示），连续的字母、数字只用一个none
+     * @param runs       是否合并连续的非中文字母、数字
+     * @return 一个字符串，由[拼音][分隔符][拼音]构成
+     */
+    static String convert(String text, String separator, boolean remainNone, boolean runs) {
+        return PinyinConvertor.ONE.join(text, PinyinFormat.WITHOUT_TONE, separator, remainNone, runs);
     }
 
     /**
@@ -32,6 +40,16 @@ public interface PinyinHelper {
         return PinyinConvertor.ONE.convert(text);
     }
 
+    /**
+     * 转化为拼音序列，比 {@link #convert(String)} 占用内存少，并可按需获取各种格式
+     *
+     * @param text 待解析的文本
+     * @return 拼音序列
+     */
+    static PinyinSequence sequence(CharSequence text) {
+        return PinyinConvertor.ONE.sequence(text);
+    }
+
     /**
      * 转化为拼音（首字母）
      *
@@ -41,12 +59,20 @@ public interface PinyinHelper {
      * @return 一个字符串，由[首字母][分隔符][首字母]构成
      */
     static String convertToFirstChars(String text, String separator, boolean remainNone) {
-        final List<Map.Entry<Character, Pinyin>> pinyinList = PinyinConvertor.ONE.convert(text);
-        return pinyinList.stream()
-                .map(entry -> String.valueOf(null == entry.getValue()
-                        ? (remainNone ? Pinyin.none5.getFirstChar() : entry.getKey())
-                        : entry.getValue().getFirstChar()))
-                .collect(Collectors.joining(separator));
+        return PinyinConvertor.ONE.join(text, PinyinFormat.FIRST_CHAR, separator, remainNone);
+    }
+
+    /**
+     * 转化为拼音（首字母），连续的非中文字母、数字（如 iPhone、2022）作为一项
+     *
+     * @param text       文本
+     * @param separator  分隔符
+     * @param remainNone 有些字没有拼音（如标点），是否保留它们（用none表示），连续的字母、数字只用一个none
+     * @param runs       是否合并连续的非中文字母、数字
+     * @return 一个字符串，由[首字母][分隔符][首字母]构成
+     */
+    static String convertToFirstChars(String text, String separator, boolean remainNone, boolean runs) {
+        return PinyinConvertor.ONE.join(text, PinyinFormat.FIRST_CHAR, separator, remainNone, runs);
     }
 
     /**
@@ -80,16 +106,17 @@ public interface PinyinHelper {
      * @return 拼音
      */
     static String pinyin(String text, boolean tone, String separator) {
-        final List<Map.Entry<Character, Pinyin>> pinyinList = PinyinConvertor.ONE.convert(text);
-        final StringBuilder result = new StringBuilder(pinyinList.size() * (6));
-        for (Map.Entry<Character, Pinyin> entry : pinyinList) {
-            if (null == entry.getValue()) result.append(entry.getKey());
-            else {
-                String py = tone ? entry.getValue().getPinyinWithToneMark() : entry.getValue().getPinyinWithoutTone();
-                result.append(separator).append(py).append(separator);
-            }
-        }
+        return PinyinConvertor.ONE.pinyin(text, tone ? PinyinFormat.WITH_TONE_MARK : PinyinFormat.WITHOUT_TONE, separator);
+    }
 
-        return result.toString().replaceAll("(" + separator + "){2,}", separator).strip();
+    /**
+     * 按拼音排序（声调为第二级，拼音相同时按原字符），每个元素只转换一次
+     *
+     * @param list 待排序的列表，原地修改
+     * @param text 获取元素的文本
+     * @param <T>  元素类型
+     */
+    static <T> void sortByPinyin(List<T> list, Function<? super T, ? extends CharSequence> text) {
+        PinyinCollator.DEFAULT.sort(list, text);
     }
 }
@@ -0,0 +1,637 @@
+package org.appxi.smartcn.pinyin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于 JDK 自带 com.sun.net.httpserver 的拼音转换服务，不引入其它依赖：
+ * <pre>
+ * java -Dsun.net.httpserver.nodelay=true -p ... --add-modules jdk.httpserver -m appxi.smartcn.pinyin/org.appxi.smartcn.pinyin.PinyinHttpServer [--port 8080]
+ *
+ * GET  /pinyin?text=中国                          → zhong guo
+ * POST /pinyin  "中国"                             → "zhong guo"
+ * POST /pinyin  ["中国","银行"]                    → ["zhong guo","yin hang"]
+ * POST /pinyin  {"text":"中国","format":"tone-mark"} → {"pinyin":"zhōng guó"}
+ * POST /pinyin  (application/x-ndjson) 每行一个 JSON 字符串或对象 → 每行一个 JSON 字符串
+ * POST /pinyin  (text/plain) 每行一段文本        → 每行一段拼音
+ * GET  /metrics                                   → 每行 "键 值"
+ * </pre>
+ * 查询参数 format（toneless、tone-mark、numbered、initials）与 separator 为默认值，JSON 对象中的同名字段优先。
+ * <p>
+ * JDK 21 及以上以虚拟线程处理请求（反射调用，仍以 17 编译），否则使用固定大小的线程池。
+ * 只含一段文本的请求进入合并队列，由每核一个转换线程批量取出：一批文本以换行连接后只建一次词网，再按段输出，
+ * 各线程复用自己的 StringBuilder；设置了消歧器或结果缓存时逐段转换，结果与单独转换一致。
+ * 多段文本的请求直接在请求线程中转换。
+ * 队列已满、等待超过 {@link #CONVERT_TIMEOUT_SECONDS} 秒或服务正在停止时响应 503。
+ * <p>
+ * 响应头与响应体分两次写出，保持连接时须以 -Dsun.net.httpserver.nodelay=true 启动以关闭 Nagle 算法，
+ * 否则每个请求都会遇上约 40ms 的延迟确认。该属性作用于整个 JVM，由启动命令指定，本类不设置。
+ */
+public final class PinyinHttpServer {
+    private static final int MAX_BODY = 16 << 20;
+    /**
+     * 单段文本在合并队列中等待转换的最长时间
+     */
+    static final long CONVERT_TIMEOUT_SECONDS = 30;
+
+    private record Item(String text, PinyinFormat format, String separator, CompletableFuture<String> result) {
+    }
+
+    /**
+     * 暂时无法处理，响应 503
+     */
+    private static final class UnavailableException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UnavailableException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private static final UnavailableException STOPPED = new UnavailableException("server stopped");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final BlockingQueue<Item> queue;
+    private final Thread[] converters;
+    private final int maxBatch;
+    private final long batchDelayNanos;
+    private volatile boolean running = true;
+    /**
+     * 停止开始后不再接受新的单段请求
+     */
+    private volatile boolean accepting = true;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder texts = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedTexts = new LongAdder();
+
+    /**
+     * @param address          监听地址
+     * @param maxBatch         合并转换时每批最多的请求数
+     * @param batchDelayMicros 合并转换时等待凑满一批的最长时间（微秒），0 表示只合并已在队列中的请求
+     * @param queueCapacity    合并队列的容量，已满时新的请求响应 503
+     * @throws IOException 无法监听
+     */
+    public PinyinHttpServer(InetSocketAddress address, int maxBatch, long batchDelayMicros, int queueCapacity) throws IOException {
+        if (maxBatch <= 0) throw new IllegalArgumentException("maxBatch: " + maxBatch);
+        if (batchDelayMicros < 0) throw new IllegalArgumentException("batchDelayMicros: " + batchDelayMicros);
+        if (queueCapacity <= 0) throw new IllegalArgumentException("queueCapacity: " + queueCapacity);
+        this.maxBatch = maxBatch;
+        this.batchDelayNanos = TimeUnit.MICROSECONDS.toNanos(batchDelayMicros);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.server = HttpServer.create(address, 1024);
+        this.executor = handlerExecutor();
+        server.setExecutor(executor);
+        server.createContext("/pinyin", this::handlePinyin);
+        server.createContext("/metrics", this::handleMetrics);
+        this.converters = new Thread[Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < converters.length; i++) {
+            converters[i] = new Thread(this::convertBatches, "pinyin-http-converter-" + i);
+            converters[i].setDaemon(true);
+        }
+    }
+
+    /**
+     * JDK 21 起使用虚拟线程
+     */
+    private static ExecutorService handlerExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newFixedThreadPool(Math.max(16, Runtime.getRuntime().availableProcessors() * 4), runnable -> {
+                final Thread thread = new Thread(runnable, "pinyin-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void start() {
+        // 词典在接受请求前加载
+        PinyinConvertor.ONE.getDictionaryTrie();
+        for (Thread converter : converters) converter.start();
+        server.start();
+    }
+
+    /**
+     * 新的请求响应 503；已入队的请求在 delaySeconds 内继续转换，之后仍未完成的不再转换，释放等待它们的请求线程
+     *
+     * @param delaySeconds 等待处理中的请求完成的最长时间（秒）
+     */
+    public void stop(int delaySeconds) {
+        accepting = false;
+        server.stop(delaySeconds);
+        running = false;
+        for (Thread converter : converters) converter.interrupt();
+        for (Item item; null != (item = queue.poll()); ) {
+            item.result.completeExceptionally(STOPPED);
+        }
+        executor.shutdown();
+    }
+
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = "0.0.0.0";
+        int port = 8080;
+        int maxBatch = 64;
+        long batchDelayMicros = 0;
+        int queueCapacity = 4096;
+        boolean metrics = true;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--host" -> host = args[++i];
+                    case "--port" -> port = Integer.parseInt(args[++i]);
+                    case "--batch-size" -> maxBatch = Integer.parseInt(args[++i]);
+                    case "--batch-delay-micros" -> batchDelayMicros = Long.parseLong(args[++i]);
+                    case "--queue-size" -> queueCapacity = Integer.parseInt(args[++i]);
+                    case "--no-metrics" -> metrics = false;
+                    default -> throw new IllegalArgumentException("unknown option: " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("pinyin: " + (e instanceof ArrayIndexOutOfBoundsException ? "missing option value" : e.getMessage()));
+            System.err.println("usage: PinyinHttpServer [--host host] [--port port] [--batch-size n] [--batch-delay-micros n] [--queue-size n] [--no-metrics]");
+            System.exit(2);
+            return;
+        }
+        if (metrics && !(PinyinConvertor.ONE.getMetrics() instanceof PinyinMetricsRecorder)) {
+            PinyinConvertor.ONE.setMetrics(new PinyinMetricsRecorder());
+        }
+        final PinyinHttpServer server = new PinyinHttpServer(new InetSocketAddress(host, port), maxBatch, batchDelayMicros, queueCapacity);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        System.err.println("pinyin: listening on " + server.address());
+    }
+
+    private void convertBatches() {
+        final StringBuilder scratch = new StringBuilder(256);
+        final List<Item> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatch - 1);
+                if (batchDelayNanos > 0 && batch.size() < maxBatch) {
+                    final long deadline = System.nanoTime() + batchDelayNanos;
+                    for (long remaining; batch.size() < maxBatch && (remaining = deadline - System.nanoTime()) > 0; ) {
+                        final Item item = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (null == item) break;
+                        batch.add(item);
+                        queue.drainTo(batch, maxBatch - batch.size());
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    // 凑批时被停止，已取出的请求同样不再转换
+                    batch.forEach(item -> item.result.completeExceptionally(STOPPED));
+                    break;
+                }
+            }
+            // 已超时放弃的请求不再转换
+            batch.removeIf(item -> item.result.isDone());
+            if (batch.isEmpty()) continue;
+            batches.increment();
+            batchedTexts.add(batch.size());
+            convert(batch, scratch);
+            batch.clear();
+            // 偶发的长文本不让缓冲区一直占用大块内存
+            if (scratch.capacity() > 64 * 1024) {
+                scratch.setLength(0);
+                scratch.trimToSize();
+            }
+        }
+    }
+
+    /**
+     * 一批文本以换行连接后只建一次词网（词条不含换行，匹配不会跨段），再以各自的格式与分隔符按段输出。
+     * 消歧器以前后字为特征、结果缓存按段命中，设置了二者之一时逐段转换
+     */
+    private static void convert(List<Item> batch, StringBuilder scratch) {
+        final PinyinConvertor convertor = PinyinConvertor.ONE;
+        if (batch.size() == 1 || null != convertor.getDisambiguator() || null != convertor.getResultCache()) {
+            for (Item item : batch) {
+                try {
+                    scratch.setLength(0);
+                    convertor.pinyin(item.text, item.format, item.separator, scratch);
+                    item.result.complete(scratch.toString());
+                } catch (Throwable e) {
+                    item.result.completeExceptionally(e);
+                }
+            }
+            return;
+        }
+        int length = batch.size() - 1;
+        for (Item item : batch) length += item.text.length();
+        final char[] chars = new char[length];
+        final int[] ends = new int[batch.size()];
+        for (int i = 0, pos = 0; i < ends.length; i++) {
+            final String text = batch.get(i).text;
+            if (i > 0) chars[pos++] = '\n';
+            text.getChars(0, text.length(), chars, pos);
+            pos += text.length();
+            ends[i] = pos;
+        }
+        final Pinyin[][] wordNet;
+        try {
+            wordNet = convertor.wordNet(chars);
+        } catch (Throwable e) {
+            batch.forEach(item -> item.result.completeExceptionally(e));
+            return;
+        }
+        for (int i = 0, from = 0; i < ends.length; from = ends[i++] + 1) {
+            final Item item = batch.get(i);
+            try {
+                scratch.setLength(0);
+                final PinyinRenderer renderer = convertor.renderer(item.format, item.separator);
+                renderer.pinyin(chars, wordNet, from, ends[i], renderer.output(scratch));
+                item.result.complete(scratch.toString());
+            } catch (Throwable e) {
+                item.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 单段文本经合并队列转换
+     */
+    private String convertOne(String text, PinyinFormat format, String separator) throws IOException {
+        texts.increment();
+        if (!accepting) throw STOPPED;
+        final Item item = new Item(text, format, separator, new CompletableFuture<>());
+        if (!queue.offer(item)) {
+            rejected.increment();
+            throw new UnavailableException("too many pending requests");
+        }
+        try {
+            return item.result.get(CONVERT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            item.result.cancel(false);
+            throw new UnavailableException("conversion timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnavailableException unavailable) throw unavailable;
+            // 请求参数在入队前已校验，转换线程上的异常都是服务端错误，响应 500
+            throw new IllegalStateException("conversion failed", e.getCause());
+        }
+    }
+
+    private void handlePinyin(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try {
+            final Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            final PinyinFormat format = PinyinFormat.parse(query.getOrDefault("format", "toneless"));
+            final String separator = query.getOrDefault("separator", " ");
+            switch (exchange.getRequestMethod()) {
+                case "GET" -> {
+                    final String text = query.get("text");
+                    if (null == text) throw new IllegalArgumentException("missing text");
+                    respond(exchange, 200, "text/plain; charset=utf-8", convertOne(text, format, separator));
+                }
+                case "POST" -> {
+                    final String body = readBody(exchange.getRequestBody());
+                    final String contentType = String.valueOf(exchange.getRequestHeaders().getFirst("Content-Type")).toLowerCase(Locale.ROOT);
+                    if (contentType.startsWith("application/x-ndjson") || contentType.startsWith("application/jsonl")) {
+                        respond(exchange, 200, "application/x-ndjson; charset=utf-8", ndjson(body, format, separator));
+                    } else if (contentType.startsWith("text/plain")) {
+                        respond(exchange, 200, "text/plain; charset=utf-8", lines(body, format, separator));
+                    } else {
+                        respond(exchange, 200, "application/json; charset=utf-8", json(Json.parse(body), format, separator));
+                    }
+                }
+                default -> {
+                    errors.increment();
+                    exchange.getResponseHeaders().set("Allow", "GET, POST");
+                    respond(exchange, 405, "text/plain; charset=utf-8", "method not allowed\n");
+                }
+            }
+        } catch (UnavailableException e) {
+            errors.increment();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, "text/plain; charset=utf-8", e.getMessage() + '\n');
+        } catch (IllegalArgumentException e) {
+            errors.increment();
+            respond(exchange, 400, "text/plain; charset=utf-8", String.valueOf(e.getMessage()) + '\n');
+        } catch (RuntimeException e) {
+            errors.increment();
+            respond(exchange, 500, "text/plain; charset=utf-8", e + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String json(Object request, PinyinFormat format, String separator) throws IOException {
+        final StringBuilder result = new StringBuilder();
+        if (request instanceof String text) {
+            Json.quote(result, convertOne(text, format, separator));
+        } else if (request instanceof List<?> list) {
+            convertAll(list, format, separator, result);
+        } else if (request instanceof Map<?, ?> map) {
+            final PinyinFormat objectFormat = map.get("format") instanceof String value ? PinyinFormat.parse(value) : format;
+            final String objectSeparator = map.get("separator") instanceof String value ? value : separator;
+            final Object text = map.get("text");
+            result.append("{\"pinyin\":");
+            if (text instanceof String value) {
+                Json.quote(result, convertOne(value, objectFormat, objectSeparator));
+            } else if (text instanceof List<?> list) {
+                convertAll(list, objectFormat, objectSeparator, result);
+            } else {
+                throw new IllegalArgumentException("text must be a string or an array of strings");
+            }
+            result.append('}');
+        } else {
+            throw new IllegalArgumentException("expect a string, an array of strings or an object with text");
+        }
+        return result.toString();
+    }
+
+    /**
+     * 多段文本在请求线程中逐段转换，共用一个缓冲区
+     */
+    private void convertAll(List<?> list, PinyinFormat format, String separator, StringBuilder result) {
+        texts.add(list.size());
+        final StringBuilder scratch = new StringBuilder(64);
+        result.append('[');
+        for (int i = 0; i < list.size(); i++) {
+            if (!(list.get(i) instanceof String text)) throw new IllegalArgumentException("array items must be strings");
+            if (i > 0) result.append(',');
+            scratch.setLength(0);
+            PinyinConvertor.ONE.pinyin(text, format, separator, scratch);
+            Json.quote(result, scratch);
+        }
+        result.append(']');
+    }
+
+    private String ndjson(String body, PinyinFormat format, String separator) {
+        final StringBuilder result = new StringBuilder(body.length() * 3);
+        final StringBuilder scratch = new StringBuilder(64);
+        for (String line : body.split("\n")) {
+            if (line.isBlank()) continue;
+            final Object request = Json.parse(line);
+            PinyinFormat lineFormat = format;
+            String lineSeparator = separator;
+            Object text = request;
+            if (request instanceof Map<?, ?> map) {
+                if (map.get("format") instanceof String value) lineFormat = PinyinFormat.parse(value);
+                if (map.get("separator") instanceof String value) lineSeparator = value;
+                text = map.get("text");
+            }
+            if (!(text instanceof String value)) throw new IllegalArgumentException("each line must be a string or an object with text");
+            texts.increment();
+            scratch.setLength(0);
+            PinyinConvertor.ONE.pinyin(value, lineFormat, lineSeparator, scratch);
+            Json.quote(result, scratch);
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    private String lines(String body, PinyinFormat format, String separator) {
+        final StringBuilder result = new StringBuilder(body.length() * 3);
+        int count = 0;
+        for (int start = 0; start < body.length(); ) {
+            int end = body.indexOf('\n', start);
+            if (end < 0) end = body.length();
+            final int next = end + 1;
+            if (end > start && body.charAt(end - 1) == '\r') end--;
+            PinyinConvertor.ONE.pinyin(body.substring(start, end), format, separator, result);
+            result.append('\n');
+            count++;
+            start = next;
+        }
+        texts.add(count);
+        return result.toString();
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            final Map<String, Long> map = new LinkedHashMap<>();
+            map.put("pinyin.http.requests", requests.sum());
+            map.put("pinyin.http.errors", errors.sum());
+            map.put("pinyin.http.rejected", rejected.sum());
+            map.put("pinyin.http.texts", texts.sum());
+            map.put("pinyin.http.batches", batches.sum());
+            map.put("pinyin.http.batched_texts", batchedTexts.sum());
+            map.put("pinyin.http.queue", (long) queue.size());
+            if (PinyinConvertor.ONE.getMetrics() instanceof PinyinMetricsRecorder recorder) {
+                map.putAll(recorder.snapshot());
+            }
+            final PinyinResultCache resultCache = PinyinConvertor.ONE.getResultCache();
+            if (null != resultCache) {
+                final PinyinResultCache.Stats stats = resultCache.stats();
+                map.put("pinyin.cache.hits", stats.hits());
+                map.put("pinyin.cache.misses", stats.misses());
+                map.put("pinyin.cache.evictions", stats.evictions());
+                map.put("pinyin.cache.size", stats.size());
+                map.put("pinyin.cache.weight", stats.weight());
+            }
+            final StringBuilder result = new StringBuilder(map.size() * 40);
+            map.forEach((k, v) -> result.append(k).append(' ').append(v).append('\n'));
+            respond(exchange, 200, "text/plain; charset=utf-8", result.toString());
+        }
+    }
+
+    private static String readBody(InputStream stream) throws IOException {
+        final byte[] bytes = stream.readNBytes(MAX_BODY + 1);
+        if (bytes.length > MAX_BODY) throw new IllegalArgumentException("request body too large");
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        final Map<String, String> map = new LinkedHashMap<>();
+        if (null == rawQuery || rawQuery.isEmpty()) return map;
+        for (String pair : rawQuery.split("&")) {
+            final int eq = pair.indexOf('=');
+            final String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            map.put(key, eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return map;
+    }
+
+    /**
+     * 只够解析请求的最小 JSON：字符串、数组、对象，其它值按原样解析为 Double、Boolean 或 null
+     */
+    private static final class Json {
+        private final String text;
+        private int pos;
+
+        private Json(String text) {
+            this.text = text;
+        }
+
+        static Object parse(String text) {
+            final Json json = new Json(text);
+            final Object value = json.value();
+            json.skipSpace();
+            if (json.pos != text.length()) throw json.error("unexpected content");
+            return value;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("invalid json at " + pos + ": " + message);
+        }
+
+        private void skipSpace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        }
+
+        private Object value() {
+            skipSpace();
+            if (pos >= text.length()) throw error("unexpected end");
+            final char ch = text.charAt(pos);
+            switch (ch) {
+                case '"':
+                    return string();
+                case '[': {
+                    pos++;
+                    final List<Object> list = new ArrayList<>();
+                    skipSpace();
+                    if (pos < text.length() && text.charAt(pos) == ']') {
+                        pos++;
+                        return list;
+                    }
+                    while (true) {
+                        list.add(value());
+                        skipSpace();
+                        if (pos >= text.length()) throw error("unexpected end");
+                        final char next = text.charAt(pos++);
+                        if (next == ']') return list;
+                        if (next != ',') throw error("expect , or ]");
+                    }
+                }
+                case '{': {
+                    pos++;
+                    final Map<String, Object> map = new LinkedHashMap<>();
+                    skipSpace();
+                    if (pos < text.length() && text.charAt(pos) == '}') {
+                        pos++;
+                        return map;
+                    }
+                    while (true) {
+                        skipSpace();
+                        if (pos >= text.length() || text.charAt(pos) != '"') throw error("expect key");
+                        final String key = string();
+                        skipSpace();
+                        if (pos >= text.length() || text.charAt(pos++) != ':') throw error("expect :");
+                        map.put(key, value());
+                        skipSpace();
+                        if (pos >= text.length()) throw error("unexpected end");
+                        final char next = text.charAt(pos++);
+                        if (next == '}') return map;
+                        if (next != ',') throw error("expect , or }");
+                    }
+                }
+                default: {
+                    final int start = pos;
+                    while (pos < text.length() && ",]} \t\r\n".indexOf(text.charAt(pos)) < 0) pos++;
+                    final String literal = text.substring(start, pos);
+                    switch (literal) {
+                        case "true":
+                            return Boolean.TRUE;
+                        case "false":
+                            return Boolean.FALSE;
+                        case "null":
+                            return null;
+                        default:
+                            try {
+                                return Double.valueOf(literal);
+                            } catch (NumberFormatException e) {
+                                pos = start;
+                                throw error("unexpected " + literal);
+                            }
+                    }
+                }
+            }
+        }
+
+        private String string() {
+            pos++;
+            final StringBuilder result = new StringBuilder();
+            while (pos < text.length()) {
+                final char ch = text.charAt(pos++);
+                if (ch == '"') return result.toString();
+                if (ch != '\\') {
+                    result.append(ch);
+                    continue;
+                }
+                if (pos >= text.length()) break;
+                final char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case 'b' -> result.append('\b');
+                    case 'f' -> result.append('\f');
+                    case 'n' -> result.append('\n');
+                    case 'r' -> result.append('\r');
+                    case 't' -> result.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) throw error("bad unicode escape");
+                        try {
+                            result.append((char) Integer.parseInt(text, pos, pos + 4, 16));
+                        } catch (NumberFormatException e) {
+                            throw error("bad unicode escape");
+                        }
+                        pos += 4;
+                    }
+                    default -> result.append(escaped);
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        static void quote(StringBuilder out, CharSequence value) {
+            out.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                final char ch = value.charAt(i);
+                switch (ch) {
+                    case '"' -> out.append("\\\"");
+                    case '\\' -> out.append("\\\\");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    case '\t' -> out.append("\\t");
+                    default -> {
+                        if (ch < 0x20) out.append(String.format("\\u%04x", (int) ch));
+                        else out.append(ch);
+                    }
+                }
+            }
+            out.append('"');
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.appxi.smartcn.pinyin;
+
+import org.appxi.smartcn.util.trie.DoubleArrayTrieByAhoCorasick;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ * native image 镜像堆中的内置词典快照。
+ * <p>
+ * 此类在镜像构建时初始化（见 META-INF/native-image/.../native-image.properties），
+ * 构建时指定 -Dsmartcn.pinyin.imageHeap=true 则由 data.txt 建好词典，建好的词典对象（双数组、失败函数与读音数组）
+ * 与补充平面码位表直接存入镜像堆；运行时没有用户的 pinyin.txt 时 {@link PinyinConvertor} 直接使用该实例，
+ * 不读取 data.txt 或 pinyin.bin，也不反序列化或复制。
+ * 在 JVM 上或未指定该属性时快照为空。
+ */
+final class PinyinImageHeap {
+    static final String PROPERTY = "smartcn.pinyin.imageHeap";
+
+    private static final DoubleArrayTrieByAhoCorasick<Pinyin[]> TRIE;
+    private static final SupplementaryTable SUPPLEMENTARY;
+    /**
+     * 词条中最小的字符
+     */
+    private static final char MIN_KEY_CHAR;
+    /**
+     * 是否有词条含大文本拆分的边界字符
+     */
+    private static final boolean BOUNDARY_IN_KEYS;
+
+    static {
+        DoubleArrayTrieByAhoCorasick<Pinyin[]> trie = null;
+        SupplementaryTable supplementary = null;
+        char minKeyChar = Character.MAX_VALUE;
+        boolean boundaryInKeys = false;
+        if ("buildtime".equals(System.getProperty("org.graalvm.nativeimage.imagecode")) && Boolean.getBoolean(PROPERTY)) {
+            final TreeMap<String, Pinyin[]> primaryMap = new TreeMap<>();
+            try (InputStream stream = PinyinImageHeap.class.getResourceAsStream("data.txt")) {
+                if (null == stream) throw new IllegalStateException("data.txt not found");
+                PinyinTxtParser.parse(new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8), 64 * 1024),
+                        primaryMap, new HashMap<>(), (line, e) -> {
+                            throw new IllegalStateException("拼音词典data.txt有问题在【" + line + "】", e);
+                        });
+                supplementary = PinyinTxtParser.splitSupplementary(primaryMap, key -> {
+                    throw new IllegalStateException("拼音词典data.txt有问题在【" + key + "】");
+                });
+                minKeyChar = PinyinTxtParser.minKeyChar(primaryMap.keySet());
+                boundaryInKeys = PinyinTxtParser.containsBoundary(primaryMap.keySet());
+                trie = new DoubleArrayTrieByAhoCorasick<>();
+                trie.build(primaryMap);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        TRIE = trie;
+        SUPPLEMENTARY = supplementary;
+        MIN_KEY_CHAR = minKeyChar;
+        BOUNDARY_IN_KEYS = boundaryInKeys;
+    }
+
+    private PinyinImageHeap() {
+    }
+
+    static boolean present() {
+        return null != TRIE;
+    }
+
+    static DoubleArrayTrieByAhoCorasick<Pinyin[]> trie() {
+        return TRIE;
+    }
+
+    static SupplementaryTable supplementary() {
+        return SUPPLEMENTARY;
+    }
+
+    static char minKeyChar() {
+        return MIN_KEY_CHAR;
+    }
+
+    static boolean boundaryInKeys() {
+        return BOUNDARY_IN_KEYS;
+    }
+}
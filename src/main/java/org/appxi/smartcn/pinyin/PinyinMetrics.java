@@ -0,0 +1,67 @@
+package org.appxi.smartcn.pinyin;
+
+/**
+ * PinyinConvertor 的监控接口，在词典加载、重新加载以及每次转换时回调。
+ * <p>
+ * 回调发生在调用方线程上，实现应当足够轻量（如 {@link PinyinMetricsRecorder}）；
+ * 未设置时使用 {@link #NONE}，转换路径上只多一次引用比较。
+ *
+ * @see PinyinConvertor#setMetrics(PinyinMetrics)
+ */
+public interface PinyinMetrics {
+    /**
+     * 不做任何事
+     */
+    PinyinMetrics NONE = new PinyinMetrics() {
+    };
+
+    /**
+     * 词典来源
+     */
+    enum Source {
+        /**
+         * 缓存的 pinyin.bin
+         */
+        BIN,
+        /**
+         * 内置的 data.txt
+         */
+        TXT,
+        /**
+         * 内置的 data.txt 加上用户管理的 pinyin.txt
+         */
+        USER_TXT,
+        /**
+         * native image 镜像堆中的内置词典快照
+         */
+        IMAGE,
+    }
+
+    /**
+     * 词典首次加载完成
+     *
+     * @param source  来源
+     * @param entries 词条数
+     * @param bytes   读取的字节数
+     * @param nanos   耗时（纳秒）
+     */
+    default void onLoad(Source source, int entries, long bytes, long nanos) {
+    }
+
+    /**
+     * 词典重新加载完成，参数同 {@link #onLoad(Source, int, long, long)}
+     */
+    default void onReload(Source source, int entries, long bytes, long nanos) {
+        onLoad(source, entries, bytes, nanos);
+    }
+
+    /**
+     * 一次转换完成
+     *
+     * @param length 输入长度（字符数）
+     * @param oov    没有拼音的汉字数
+     * @param nanos  匹配耗时（纳秒）
+     */
+    default void onConvert(int length, int oov, long nanos) {
+    }
+}
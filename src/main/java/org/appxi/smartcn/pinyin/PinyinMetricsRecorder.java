@@ -0,0 +1,119 @@
+package org.appxi.smartcn.pinyin;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于 {@link LongAdder} 的 {@link PinyinMetrics} 实现，高并发下写入开销很小。
+ * <p>
+ * 输入长度与耗时以 2 的幂分桶统计；{@link #snapshot()} 输出扁平的 Map，便于采集。
+ */
+public final class PinyinMetricsRecorder implements PinyinMetrics {
+    private static final int BUCKETS = 32;
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder[] loadsBySource = adders(Source.values().length);
+    private volatile long lastLoadNanos;
+    private volatile long lastLoadEntries;
+    private volatile long lastLoadBytes;
+
+    private final LongAdder converts = new LongAdder();
+    private final LongAdder chars = new LongAdder();
+    private final LongAdder oovChars = new LongAdder();
+    private final LongAdder convertNanos = new LongAdder();
+    private final LongAdder[] lengthBuckets = adders(BUCKETS);
+    private final LongAdder[] microsBuckets = adders(BUCKETS);
+
+    private static LongAdder[] adders(int size) {
+        final LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * 值所在的桶，桶 i 的上限为 2^i（含）
+     */
+    private static int bucket(long value) {
+        return value <= 1 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value - 1));
+    }
+
+    @Override
+    public void onLoad(Source source, int entries, long bytes, long nanos) {
+        loads.increment();
+        loaded(source, entries, bytes, nanos);
+    }
+
+    @Override
+    public void onReload(Source source, int entries, long bytes, long nanos) {
+        reloads.increment();
+        loaded(source, entries, bytes, nanos);
+    }
+
+    private void loaded(Source source, int entries, long bytes, long nanos) {
+        loadsBySource[source.ordinal()].increment();
+        lastLoadNanos = nanos;
+        lastLoadEntries = entries;
+        lastLoadBytes = bytes;
+    }
+
+    @Override
+    public void onConvert(int length, int oov, long nanos) {
+        converts.increment();
+        chars.add(length);
+        if (oov > 0) oovChars.add(oov);
+        convertNanos.add(nanos);
+        lengthBuckets[bucket(length)].increment();
+        microsBuckets[bucket(nanos / 1000)].increment();
+    }
+
+    /**
+     * 当前统计值。键名以 pinyin. 开头；直方图的键为 ...le_N，表示值 &lt;= N 的次数（不累计）
+     *
+     * @return 新的 Map，调用方可随意修改
+     */
+    public Map<String, Long> snapshot() {
+        final Map<String, Long> map = new LinkedHashMap<>();
+        map.put("pinyin.load.count", loads.sum());
+        map.put("pinyin.reload.count", reloads.sum());
+        for (Source source : Source.values()) {
+            map.put("pinyin.load.source." + source.name().toLowerCase(Locale.ROOT), loadsBySource[source.ordinal()].sum());
+        }
+        map.put("pinyin.load.last.nanos", lastLoadNanos);
+        map.put("pinyin.load.last.entries", lastLoadEntries);
+        map.put("pinyin.load.last.bytes", lastLoadBytes);
+        map.put("pinyin.convert.count", converts.sum());
+        map.put("pinyin.convert.chars", chars.sum());
+        map.put("pinyin.convert.oov", oovChars.sum());
+        map.put("pinyin.convert.nanos", convertNanos.sum());
+        putHistogram(map, "pinyin.convert.length.le_", lengthBuckets);
+        putHistogram(map, "pinyin.convert.micros.le_", microsBuckets);
+        return map;
+    }
+
+    private static void putHistogram(Map<String, Long> map, String prefix, LongAdder[] buckets) {
+        for (int i = 0; i < buckets.length; i++) {
+            final long count = buckets[i].sum();
+            if (count > 0) map.put(prefix + (i == BUCKETS - 1 ? "inf" : String.valueOf(1L << i)), count);
+        }
+    }
+
+    /**
+     * 清零全部统计
+     */
+    public void reset() {
+        loads.reset();
+        reloads.reset();
+        for (LongAdder adder : loadsBySource) adder.reset();
+        converts.reset();
+        chars.reset();
+        oovChars.reset();
+        convertNanos.reset();
+        for (LongAdder adder : lengthBuckets) adder.reset();
+        for (LongAdder adder : microsBuckets) adder.reset();
+    }
+}
@@ -0,0 +1,186 @@
+package org.appxi.smartcn.pinyin;
+
+import org.appxi.util.FileHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.appxi.smartcn.pinyin.PinyinDisambiguator.FLOOR;
+import static org.appxi.smartcn.pinyin.PinyinDisambiguator.NONE;
+import static org.appxi.smartcn.pinyin.PinyinDisambiguator.TYPE_LEFT;
+import static org.appxi.smartcn.pinyin.PinyinDisambiguator.TYPE_RIGHT;
+import static org.appxi.smartcn.pinyin.PinyinDisambiguator.TYPE_TRANSITION;
+import static org.appxi.smartcn.pinyin.PinyinDisambiguator.TYPE_UNIGRAM;
+import static org.appxi.smartcn.pinyin.PinyinDisambiguator.key;
+import static org.appxi.smartcn.pinyin.PinyinDisambiguator.slot;
+
+/**
+ * 多音字消歧模型的离线训练工具。
+ * <p>
+ * 语料与词典格式相同，每行一句：<code>银行行长=yin2,hang2,hang2,zhang3</code>，
+ * 只有语料中出现过至少两个读音的字才会进入模型。
+ * <p>
+ * 用法：<code>PinyinModelTrainer &lt;corpus&gt; [model] [minCount]</code>
+ */
+public final class PinyinModelTrainer {
+    private static final Logger logger = LoggerFactory.getLogger(PinyinModelTrainer.class);
+
+    /**
+     * 加性平滑系数
+     */
+    private static final double ALPHA = 0.5;
+
+    /**
+     * 上下文特征的最小出现次数，低于此值的上下文不写入模型
+     */
+    private final int minCount;
+
+    private final Map<Long, int[]> counts = new HashMap<>();
+    private final Map<Character, Set<Integer>> readings = new HashMap<>();
+
+    public PinyinModelTrainer(int minCount) {
+        this.minCount = Math.max(1, minCount);
+    }
+
+    private void count(long key) {
+        counts.computeIfAbsent(key, k -> new int[1])[0]++;
+    }
+
+    private int countOf(long key) {
+        final int[] count = counts.get(key);
+        return null == count ? 0 : count[0];
+    }
+
+    /**
+     * 读取语料
+     *
+     * @param corpus 语料文件
+     * @throws IOException 读取失败
+     */
+    public void train(Path corpus) throws IOException {
+        int lineNo = 0, skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(corpus, StandardCharsets.UTF_8)) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                lineNo++;
+                final int idx = line.indexOf('=');
+                if (idx <= 0) continue;
+                final String text = line.substring(0, idx);
+                final String[] values = line.substring(idx + 1).strip().split(",");
+                if (values.length != text.length()) {
+                    skipped++;
+                    continue;
+                }
+                final int[] ordinals = new int[values.length];
+                try {
+                    for (int i = 0; i < values.length; i++) {
+                        ordinals[i] = Pinyin.valueOf(values[i].strip()).ordinal();
+                    }
+                } catch (IllegalArgumentException e) {
+                    logger.warn("语料第" + lineNo + "行有问题【" + line + "】");
+                    skipped++;
+                    continue;
+                }
+                train(text, ordinals);
+            }
+        }
+        logger.info("corpus lines: " + lineNo + ", skipped: " + skipped);
+    }
+
+    private void train(String text, int[] ordinals) {
+        for (int i = 0; i < ordinals.length; i++) {
+            final char ch = text.charAt(i);
+            final int reading = ordinals[i];
+            final int prevChar = i > 0 ? text.charAt(i - 1) : NONE;
+            final int nextChar = i + 1 < ordinals.length ? text.charAt(i + 1) : NONE;
+            final int prevReading = i > 0 ? ordinals[i - 1] : NONE;
+            readings.computeIfAbsent(ch, k -> new HashSet<>()).add(reading);
+            count(key(TYPE_UNIGRAM, ch, 0, FLOOR));
+            count(key(TYPE_UNIGRAM, ch, 0, reading));
+            count(key(TYPE_LEFT, prevChar, ch, FLOOR));
+            count(key(TYPE_LEFT, prevChar, ch, reading));
+            count(key(TYPE_RIGHT, ch, nextChar, FLOOR));
+            count(key(TYPE_RIGHT, ch, nextChar, reading));
+            count(key(TYPE_TRANSITION, prevReading, ch, FLOOR));
+            count(key(TYPE_TRANSITION, prevReading, ch, reading));
+        }
+    }
+
+    /**
+     * 计算特征权重并写出模型
+     *
+     * @param model 模型文件
+     * @throws IOException 写入失败
+     */
+    public void save(Path model) throws IOException {
+        final Map<Long, Float> features = new HashMap<>();
+        // 字 -> 读音，以 log P(r|c) 表示
+        final Map<Long, Float> unigrams = new HashMap<>();
+        readings.forEach((ch, set) -> {
+            if (set.size() < 2) return;
+            final double total = countOf(key(TYPE_UNIGRAM, ch, 0, FLOOR)) + ALPHA * (set.size() + 1);
+            for (int reading : set) {
+                final long key = key(TYPE_UNIGRAM, ch, 0, reading);
+                unigrams.put(key, (float) Math.log((countOf(key) + ALPHA) / total));
+            }
+            unigrams.put(key(TYPE_UNIGRAM, ch, 0, FLOOR), (float) Math.log(ALPHA / total));
+        });
+        features.putAll(unigrams);
+        // 上下文特征以相对 unigram 的对数比表示，缺失时为 0
+        counts.forEach((ctxKey, ctxCount) -> {
+            if ((ctxKey & 0xFFFF) != FLOOR || (ctxKey >>> 48) == TYPE_UNIGRAM || ctxCount[0] < minCount) return;
+            final char ch = (char) ((ctxKey >>> 48) == TYPE_RIGHT ? ctxKey >>> 32 : ctxKey >>> 16);
+            final Set<Integer> set = readings.get(ch);
+            if (null == set || set.size() < 2) return;
+            final double total = ctxCount[0] + ALPHA * (set.size() + 1);
+            for (int reading : set) {
+                final long key = ctxKey & ~0xFFFFL | reading;
+                final float weight = (float) Math.log((countOf(key) + ALPHA) / total)
+                                     - unigrams.get(key(TYPE_UNIGRAM, ch, 0, reading));
+                if (Math.abs(weight) > 1e-3f) features.put(key, weight);
+            }
+        });
+        //
+        final int capacity = Integer.highestOneBit(Math.max(16, features.size() * 2 - 1)) << 1;
+        final long[] keys = new long[capacity];
+        final float[] values = new float[capacity];
+        features.forEach((key, value) -> {
+            int i = slot(key, capacity - 1);
+            while (keys[i] != 0) i = (i + 1) & (capacity - 1);
+            keys[i] = key;
+            values[i] = value;
+        });
+        FileHelper.makeParents(model);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(model)))) {
+            out.writeInt(PinyinDisambiguator.MAGIC);
+            out.writeInt(PinyinDisambiguator.VERSION);
+            out.writeInt(capacity);
+            for (long key : keys) out.writeLong(key);
+            for (float value : values) out.writeFloat(value);
+        }
+        logger.info("model features: " + features.size() + ", capacity: " + capacity + ", saved to: " + model);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: PinyinModelTrainer <corpus> [model] [minCount]");
+            System.exit(1);
+        }
+        final Path corpus = Path.of(args[0]);
+        final Path model = args.length > 1 ? Path.of(args[1]) : PinyinDisambiguator.defaultModelFile();
+        final PinyinModelTrainer trainer = new PinyinModelTrainer(args.length > 2 ? Integer.parseInt(args[2]) : 2);
+        trainer.train(corpus);
+        trainer.save(model);
+    }
+}
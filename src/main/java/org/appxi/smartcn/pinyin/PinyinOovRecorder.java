@@ -0,0 +1,200 @@
+package org.appxi.smartcn.pinyin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 统计转换时没有拼音的汉字（未登录字），用于补充 pinyin.txt。
+ * <p>
+ * 计数保存在固定大小的分条（按线程）开放寻址表中，每个槽位一个 long：高位为码位，低 40 位为次数，
+ * 记录时只有 CAS/自增，不分配对象；表满后新出现的字只计入 {@link #dropped()}。
+ * 可按比例抽样转换，抽样时次数为抽样值，需除以 {@link #sampleRate()} 估算总量。
+ *
+ * @see PinyinConvertor#setOovRecorder(PinyinOovRecorder)
+ */
+public final class PinyinOovRecorder {
+    private static final int COUNT_BITS = 40;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final int SAMPLE_SCALE = 1 << 20;
+
+    /**
+     * 一个未登录字及其次数
+     *
+     * @param codePoint 码位
+     * @param count     次数
+     */
+    public record Entry(int codePoint, long count) {
+        public String text() {
+            return Character.toString(codePoint);
+        }
+    }
+
+    private final AtomicLongArray[] stripes;
+    private final int stripeMask;
+    private final int slotMask;
+    private final double sampleRate;
+    private final int sampleThreshold;
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param slotsPerStripe 每个分条的槽位数，向上取 2 的幂；即每个分条最多记录的不同字数
+     * @param sampleRate     抽样比例，(0, 1]，1 表示记录每次转换
+     */
+    public PinyinOovRecorder(int slotsPerStripe, double sampleRate) {
+        if (slotsPerStripe <= 0) throw new IllegalArgumentException("slotsPerStripe: " + slotsPerStripe);
+        if (!(sampleRate > 0 && sampleRate <= 1)) throw new IllegalArgumentException("sampleRate: " + sampleRate);
+        final int stripes = Math.min(16, ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors()));
+        final int slots = ceilingPowerOfTwo(slotsPerStripe);
+        this.stripes = new AtomicLongArray[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new AtomicLongArray(slots);
+        }
+        this.stripeMask = stripes - 1;
+        this.slotMask = slots - 1;
+        this.sampleRate = sampleRate;
+        this.sampleThreshold = (int) Math.ceil(sampleRate * SAMPLE_SCALE);
+    }
+
+    /**
+     * 每个分条 4096 个槽位，不抽样
+     */
+    public PinyinOovRecorder() {
+        this(4096, 1);
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private static int mix(int value) {
+        value *= 0x9E3779B9;
+        return value ^ value >>> 16;
+    }
+
+    /**
+     * 记录一次转换中没有拼音的汉字
+     */
+    void record(char[] chars, Pinyin[][] wordNet) {
+        if (sampleThreshold < SAMPLE_SCALE && ThreadLocalRandom.current().nextInt(SAMPLE_SCALE) >= sampleThreshold) {
+            return;
+        }
+        sampled.increment();
+        AtomicLongArray table = null;
+        for (int i = 0; i < wordNet.length; ) {
+            final Pinyin[] entry = wordNet[i];
+            if (null != entry) {
+                i += entry == PinyinConvertor.TAIL ? 1 : entry.length;
+                continue;
+            }
+            final int codePoint = Character.codePointAt(chars, i);
+            if (PinyinUtils.isHan(codePoint)) {
+                if (null == table) table = stripes[mix(System.identityHashCode(Thread.currentThread())) & stripeMask];
+                increment(table, codePoint);
+            }
+            i += Character.charCount(codePoint);
+        }
+    }
+
+    private void increment(AtomicLongArray table, int codePoint) {
+        final long key = (long) (codePoint + 1) << COUNT_BITS;
+        int slot = mix(codePoint) & slotMask;
+        for (int probe = 0; probe <= slotMask; probe++) {
+            long value = table.get(slot);
+            if (value == 0) {
+                if (table.compareAndSet(slot, 0, key | 1)) return;
+                value = table.get(slot);
+            }
+            if ((value & ~COUNT_MASK) == key) {
+                table.getAndIncrement(slot);
+                return;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        dropped.increment();
+    }
+
+    public double sampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * 被抽中记录的转换次数
+     */
+    public long sampled() {
+        return sampled.sum();
+    }
+
+    /**
+     * 因表满而未能记录的次数
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * 合并各分条的计数
+     *
+     * @return 全部未登录字，按次数从多到少、次数相同时按码位排序
+     */
+    public List<Entry> entries() {
+        final Map<Integer, Long> counts = new HashMap<>();
+        for (AtomicLongArray table : stripes) {
+            for (int i = 0; i < table.length(); i++) {
+                final long value = table.get(i);
+                if (value != 0) {
+                    counts.merge((int) (value >>> COUNT_BITS) - 1, value & COUNT_MASK, Long::sum);
+                }
+            }
+        }
+        final List<Entry> result = new ArrayList<>(counts.size());
+        counts.forEach((codePoint, count) -> result.add(new Entry(codePoint, count)));
+        result.sort(Comparator.comparingLong(Entry::count).reversed().thenComparingInt(Entry::codePoint));
+        return result;
+    }
+
+    /**
+     * @param n 最多返回的个数
+     * @return 次数最多的 n 个未登录字
+     */
+    public List<Entry> top(int n) {
+        final List<Entry> entries = entries();
+        return entries.size() <= n ? entries : List.copyOf(entries.subList(0, n));
+    }
+
+    /**
+     * 以 pinyin.txt 的格式输出全部未登录字（按次数从多到少），拼音留空，供人工补充后放入 pinyin.txt
+     * <pre>
+     * 𬬻=
+     * 𫓴=
+     * </pre>
+     *
+     * @param out 输出
+     * @throws IOException 写出失败
+     */
+    public void dump(Appendable out) throws IOException {
+        for (Entry entry : entries()) {
+            out.append(entry.text()).append('=').append('\n');
+        }
+    }
+
+    /**
+     * 清空全部计数
+     */
+    public void reset() {
+        for (AtomicLongArray table : stripes) {
+            for (int i = 0; i < table.length(); i++) {
+                table.set(i, 0);
+            }
+        }
+        sampled.reset();
+        dropped.reset();
+    }
+}
@@ -0,0 +1,233 @@
+package org.appxi.smartcn.pinyin;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link Flow} 的拼音转换环节：接收文本，按原顺序发出 {@link PinyinSequence}。
+ * <p>
+ * 转换在指定的 Executor 上并行进行，已向上游请求但尚未交给下游的条目（转换中与已转换待发出的）
+ * 不超过 maxInFlight 个：每交给下游一条才向上游再请求一条，下游处理慢时上游随之停下，
+ * 大文档的突发因此不会堆积在内存中。条目存放在固定大小的环形槽位中循环使用，不另分配队列节点。
+ * <p>
+ * 只接受一个下游订阅者；上游出错时先发完已接收的条目再转发错误，转换出错时取消上游并向下游报告该错误。
+ */
+public final class PinyinProcessor implements Flow.Processor<CharSequence, PinyinSequence> {
+    private record Failure(Throwable error) {
+    }
+
+    private final Executor executor;
+    private final int maxInFlight;
+    private final AtomicReferenceArray<Object> slots;
+
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super PinyinSequence> downstream;
+    /**
+     * 已接收的条目数，只由 onNext 写入
+     */
+    private volatile long received;
+    /**
+     * 已发出的条目数，只在 drain 中写入
+     */
+    private volatile long delivered;
+    private volatile boolean done;
+    private volatile Throwable upstreamError;
+    private volatile boolean cancelled;
+
+    /**
+     * @param executor    执行转换的线程池
+     * @param maxInFlight 已请求未发出的最大条目数
+     */
+    public PinyinProcessor(Executor executor, int maxInFlight) {
+        if (maxInFlight <= 0) throw new IllegalArgumentException("maxInFlight: " + maxInFlight);
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.maxInFlight = maxInFlight;
+        this.slots = new AtomicReferenceArray<>(maxInFlight);
+    }
+
+    /**
+     * 在公共 ForkJoinPool 上转换，在途条目数为 CPU 数的 2 倍
+     */
+    public PinyinProcessor() {
+        this(ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super PinyinSequence> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("PinyinProcessor allows only one subscriber"));
+            return;
+        }
+        downstream = subscriber;
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    upstreamError = new IllegalArgumentException("non-positive request: " + n);
+                    cancelUpstream();
+                    done = true;
+                } else {
+                    demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+                drain();
+            }
+        });
+        start();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+        if (null != upstream) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        start();
+    }
+
+    /**
+     * 上下游都就绪后一次请求 maxInFlight 条
+     */
+    private void start() {
+        final Flow.Subscription upstream = this.upstream;
+        if (null != upstream && null != downstream && started.compareAndSet(false, true)) {
+            upstream.request(maxInFlight);
+        }
+    }
+
+    private void cancelUpstream() {
+        final Flow.Subscription upstream = this.upstream;
+        if (null != upstream) upstream.cancel();
+    }
+
+    @Override
+    public void onNext(CharSequence item) {
+        Objects.requireNonNull(item, "item");
+        if (done || cancelled) return;
+        final long seq = received;
+        final int slot = (int) (seq % maxInFlight);
+        if (null != slots.get(slot) || seq - delivered >= maxInFlight) {
+            onError(new IllegalStateException("upstream sent more items than requested"));
+            cancelUpstream();
+            return;
+        }
+        received = seq + 1;
+        final String text = item.toString();
+        try {
+            executor.execute(() -> complete(slot, text));
+        } catch (RuntimeException e) {
+            slots.set(slot, new Failure(e));
+            drain();
+        }
+    }
+
+    private void complete(int slot, String text) {
+        Object result;
+        try {
+            result = PinyinConvertor.ONE.sequence(text);
+        } catch (Throwable e) {
+            result = new Failure(e);
+        }
+        slots.set(slot, result);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Objects.requireNonNull(throwable, "throwable");
+        if (done) return;
+        upstreamError = throwable;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        if (done) return;
+        done = true;
+        drain();
+    }
+
+    /**
+     * 按顺序把已转换的条目交给下游，同一时刻只有一个线程在此执行
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) return;
+        int missed = 1;
+        do {
+            final Flow.Subscriber<? super PinyinSequence> downstream = this.downstream;
+            if (cancelled) {
+                for (int i = 0; i < maxInFlight; i++) slots.set(i, null);
+            } else if (null != downstream) {
+                final long requested = demand.get();
+                long emitted = 0;
+                while (emitted != requested) {
+                    final int slot = (int) (delivered % maxInFlight);
+                    final Object result = slots.get(slot);
+                    if (null == result) break;
+                    if (result instanceof Failure failure) {
+                        terminate(downstream, failure.error);
+                        break;
+                    }
+                    slots.set(slot, null);
+                    delivered++;
+                    emitted++;
+                    downstream.onNext((PinyinSequence) result);
+                    if (cancelled) break;
+                }
+                if (emitted != 0) {
+                    if (requested != Long.MAX_VALUE) demand.addAndGet(-emitted);
+                    if (!cancelled && !done) upstream.request(emitted);
+                }
+                if (!cancelled && done && delivered == received) {
+                    final Throwable error = upstreamError;
+                    if (null == error) {
+                        cancelled = true;
+                        downstream.onComplete();
+                    } else {
+                        terminate(downstream, error);
+                    }
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void terminate(Flow.Subscriber<? super PinyinSequence> downstream, Throwable error) {
+        cancelled = true;
+        cancelUpstream();
+        downstream.onError(error);
+    }
+}
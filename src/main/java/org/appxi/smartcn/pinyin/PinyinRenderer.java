@@ -0,0 +1,272 @@
+package org.appxi.smartcn.pinyin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按指定格式与分隔符输出词网。
+ * <p>
+ * 每个拼音的字符形式与 UTF-8 字节形式预先生成；多字词条（词典中共享的 Pinyin[] 实例）在首次命中时整体生成
+ * “拼音+分隔符+拼音”的形式，之后每次命中只做一次批量复制。
+ */
+final class PinyinRenderer {
+    private static final Pinyin[] PINYINS = Pinyin.values();
+    private static final Pinyin[] NONE = {Pinyin.none5};
+
+    final PinyinFormat format;
+    final String separator;
+
+    private final byte[] separatorBytes;
+    private final char[][] syllables = new char[PINYINS.length][];
+    private final byte[][] syllableBytes = new byte[PINYINS.length][];
+    private final ConcurrentHashMap<Pinyin[], char[]> words = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Pinyin[], byte[]> wordBytes = new ConcurrentHashMap<>();
+
+    PinyinRenderer(PinyinFormat format, String separator) {
+        this.format = format;
+        this.separator = separator;
+        this.separatorBytes = separator.getBytes(StandardCharsets.UTF_8);
+        for (Pinyin pinyin : PINYINS) {
+            final String str = format.format(pinyin);
+            syllables[pinyin.ordinal()] = str.toCharArray();
+            syllableBytes[pinyin.ordinal()] = str.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 获取词条的输出形式，多个拼音之间以分隔符连接
+     *
+     * @param entry 词网中的词条
+     * @return 字符形式，调用方不可修改
+     */
+    char[] render(Pinyin[] entry) {
+        if (entry.length == 1) {
+            return syllables[entry[0].ordinal()];
+        }
+        final char[] run = words.get(entry);
+        return null != run ? run : words.computeIfAbsent(entry, k -> join(k).toCharArray());
+    }
+
+    /**
+     * 获取词条中第 index 个拼音的输出形式
+     *
+     * @return 字符形式，调用方不可修改
+     */
+    char[] render(Pinyin[] entry, int index) {
+        return syllables[entry[index].ordinal()];
+    }
+
+    /**
+     * 获取序号为 ordinal 的拼音的输出形式
+     *
+     * @return 字符形式，调用方不可修改
+     */
+    char[] syllable(int ordinal) {
+        return syllables[ordinal];
+    }
+
+    /**
+     * 获取词条的 UTF-8 输出形式，多个拼音之间以分隔符连接
+     *
+     * @param entry 词网中的词条
+     * @return 字节形式，调用方不可修改
+     */
+    byte[] renderBytes(Pinyin[] entry) {
+        if (entry.length == 1) {
+            return syllableBytes[entry[0].ordinal()];
+        }
+        final byte[] run = wordBytes.get(entry);
+        return null != run ? run : wordBytes.computeIfAbsent(entry, k -> join(k).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String join(Pinyin[] entry) {
+        final StringBuilder buf = new StringBuilder(entry.length * (6 + separator.length()));
+        for (int i = 0; i < entry.length; i++) {
+            // 补充平面汉字的低代理位置
+            if (null == entry[i]) continue;
+            if (i > 0) buf.append(separator);
+            buf.append(syllables[entry[i].ordinal()]);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * 拼音之间、拼音与其它字符之间以一个分隔符分开，连续的非拼音字符原样输出，
+     * 连续的分隔符合并为一个，首尾空白去除
+     */
+    void pinyin(char[] chars, Pinyin[][] wordNet, Output out) {
+        pinyin(chars, wordNet, 0, wordNet.length, out);
+    }
+
+    /**
+     * 只输出 [from, to) 一段，各词条不得跨越段的边界
+     */
+    void pinyin(char[] chars, Pinyin[][] wordNet, int from, int to, Output out) {
+        final int sepChar = separator.length() == 1 ? separator.charAt(0) : -1;
+        // 是否已有非空白输出
+        boolean started = false;
+        // 上一项是拼音，其后欠一个分隔符
+        boolean pending = false;
+        // 输出以分隔符结尾
+        boolean atSeparator = false;
+        // 尚未输出的连续空白的起始位置，只在其后还有内容时输出
+        int blankFrom = -1;
+        for (int i = from; i < to; ) {
+            final Pinyin[] entry = wordNet[i];
+            if (entry == PinyinConvertor.TAIL) {
+                i++;
+                continue;
+            }
+            if (null == entry && Character.isWhitespace(chars[i])) {
+                if (started && blankFrom < 0) blankFrom = i;
+                i++;
+                continue;
+            }
+            if (pending) {
+                out.separator();
+                atSeparator = true;
+                pending = false;
+            }
+            if (blankFrom >= 0) {
+                for (int j = blankFrom; j < i; j++) {
+                    final char ch = chars[j];
+                    if (ch == sepChar && atSeparator) continue;
+                    out.raw(ch);
+                    atSeparator = ch == sepChar;
+                }
+                blankFrom = -1;
+            }
+            if (null == entry) {
+                final char ch = chars[i];
+                if (ch == sepChar) {
+                    if (!atSeparator) out.raw(ch);
+                    atSeparator = true;
+                    started = true;
+                    i++;
+                    continue;
+                }
+                // 连续的非空白、非分隔符的无拼音字符整体输出
+                int end = i + 1;
+                while (end < to && null == wordNet[end] && chars[end] != sepChar && !Character.isWhitespace(chars[end])) {
+                    end++;
+                }
+                out.raw(chars, i, end);
+                atSeparator = false;
+                started = true;
+                i = end;
+                continue;
+            }
+            if (started && !atSeparator) {
+                out.separator();
+            }
+            out.entry(entry);
+            atSeparator = false;
+            started = true;
+            pending = true;
+            i += entry.length;
+        }
+        out.end();
+    }
+
+    /**
+     * 每个字一个输出项，以分隔符连接
+     *
+     * @param remainNone 无拼音的字是否以 none 的形式输出，否则输出原字符
+     * @param runs       连续的非中文字母、数字（如 iPhone、2022）是否作为一个输出项
+     */
+    void join(char[] chars, Pinyin[][] wordNet, boolean remainNone, boolean runs, Output out) {
+        for (int i = 0; i < wordNet.length; ) {
+            final Pinyin[] entry = wordNet[i];
+            if (entry == PinyinConvertor.TAIL) {
+                i++;
+                continue;
+            }
+            if (i > 0) out.separator();
+            if (null == entry) {
+                int end = i + 1;
+                if (runs && isRunChar(chars[i])) {
+                    while (end < wordNet.length && null == wordNet[end] && isRunChar(chars[end])) end++;
+                } else if (Character.isHighSurrogate(chars[i]) && end < wordNet.length && Character.isLowSurrogate(chars[end])) {
+                    // 没有读音的代理对作为一项
+                    end++;
+                }
+                if (remainNone) out.entry(NONE);
+                else out.raw(chars, i, end);
+                i = end;
+                continue;
+            }
+            out.entry(entry);
+            i += entry.length;
+        }
+        out.end();
+    }
+
+    private static boolean isRunChar(char ch) {
+        return Character.isLetterOrDigit(ch) && !PinyinUtils.isHan(ch);
+    }
+
+    Output output(StringBuilder out) {
+        return new Output() {
+            @Override
+            void separator() {
+                out.append(separator);
+            }
+
+            @Override
+            void raw(char ch) {
+                out.append(ch);
+            }
+
+            @Override
+            void raw(char[] chars, int from, int to) {
+                out.append(chars, from, to - from);
+            }
+
+            @Override
+            void entry(Pinyin[] entry) {
+                out.append(render(entry));
+            }
+        };
+    }
+
+    Output output(Utf8Sink out) {
+        return new Output() {
+            @Override
+            void separator() {
+                out.write(separatorBytes);
+            }
+
+            @Override
+            void raw(char ch) {
+                out.write(ch);
+            }
+
+            @Override
+            void entry(Pinyin[] entry) {
+                out.write(renderBytes(entry));
+            }
+
+            @Override
+            void end() {
+                out.end();
+            }
+        };
+    }
+
+    abstract static class Output {
+        abstract void separator();
+
+        abstract void raw(char ch);
+
+        void raw(char[] chars, int from, int to) {
+            for (int i = from; i < to; i++) {
+                raw(chars[i]);
+            }
+        }
+
+        abstract void entry(Pinyin[] entry);
+
+        void end() {
+        }
+    }
+}
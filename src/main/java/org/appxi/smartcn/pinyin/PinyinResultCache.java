@@ -0,0 +1,336 @@
+package org.appxi.smartcn.pinyin;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 转换结果缓存，适合大量重复的短文本（人名、地名、商品名等）。
+ * <p>
+ * 以 (文本, 格式, 分隔符, 转换方式) 为键，按估算的内存占用而非条目数限制大小。
+ * 淘汰策略为 W-TinyLFU：新条目先进入约占 1% 的窗口 LRU，离开窗口时与主区的淘汰候选比较
+ * Count-Min 频率草图中的访问频率，频率更高者留下；主区为分段 LRU（试用 20%，保护 80%）。
+ * <p>
+ * 读取只访问 ConcurrentHashMap，访问顺序的调整在锁空闲时进行，争用时直接跳过（有损但不阻塞）。
+ * 超过 maxInputLength 的文本不缓存；词典重新加载或更换消歧器时整体失效：键带有转换器的缓存世代，
+ * 新的词典或消歧器生效后世代递增，此前开始的转换即使在清空之后才写入，其条目也不会再被读到。
+ *
+ * @see PinyinConvertor#setResultCache(PinyinResultCache)
+ */
+public final class PinyinResultCache {
+    static final int PINYIN = 0;
+    static final int JOIN = 1;
+    static final int JOIN_REMAIN_NONE = 2;
+    static final int JOIN_RUNS = 3;
+    static final int JOIN_RUNS_REMAIN_NONE = 4;
+
+    /**
+     * 每个条目除字符数据外的估算开销：键、节点、两个 String 及 ConcurrentHashMap 节点
+     */
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int REMOVED = -1;
+
+    /**
+     * 统计值
+     *
+     * @param hits       命中次数
+     * @param misses     未命中次数
+     * @param evictions  被淘汰的条目数
+     * @param rejections 未被主区接纳的新条目数
+     * @param size       当前条目数
+     * @param weight     当前估算内存占用（字节）
+     */
+    public record Stats(long hits, long misses, long evictions, long rejections, long size, long weight) {
+        public double hitRate() {
+            final long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+
+    /**
+     * @param generation 转换器的缓存世代，词典或消歧器更换后递增，旧世代的条目不再命中
+     */
+    record Key(String text, PinyinFormat format, String separator, int mode, long generation) {
+    }
+
+    private static final class Node {
+        final Key key;
+        final String value;
+        final int hash;
+        final int weight;
+        int queue;
+        Node prev;
+        Node next;
+
+        Node(Key key, String value, int hash, int weight) {
+            this.key = key;
+            this.value = value;
+            this.hash = hash;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * 双向链表，头部为最久未访问
+     */
+    private static final class Queue {
+        Node head;
+        Node tail;
+        long weight;
+
+        void add(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (null == tail) head = node;
+            else tail.next = node;
+            tail = node;
+            weight += node.weight;
+        }
+
+        void remove(Node node) {
+            if (null == node.prev) head = node.next;
+            else node.prev.next = node.next;
+            if (null == node.next) tail = node.prev;
+            else node.next.prev = node.prev;
+            node.prev = node.next = null;
+            weight -= node.weight;
+        }
+
+        void clear() {
+            head = tail = null;
+            weight = 0;
+        }
+    }
+
+    private final long maxWeight;
+    private final int maxInputLength;
+    private final long windowMax;
+    private final long protectedMax;
+
+    private final ConcurrentHashMap<Key, Node> data = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Queue window = new Queue();
+    private final Queue probation = new Queue();
+    private final Queue protect = new Queue();
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param maxBytes       估算内存占用上限（字节）
+     * @param maxInputLength 可缓存的最大文本长度，更长的文本直接转换
+     */
+    public PinyinResultCache(long maxBytes, int maxInputLength) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes: " + maxBytes);
+        if (maxInputLength < 0) throw new IllegalArgumentException("maxInputLength: " + maxInputLength);
+        this.maxWeight = maxBytes;
+        this.maxInputLength = maxInputLength;
+        this.windowMax = Math.max(1, maxBytes / 100);
+        this.protectedMax = (maxBytes - windowMax) * 8 / 10;
+        // 以典型条目（约 20 字）估算条目数，决定频率草图的大小
+        this.sketch = new FrequencySketch((int) Math.min(1 << 24, maxBytes / (ENTRY_OVERHEAD + 80) + 1));
+    }
+
+    /**
+     * @return 文本可以缓存时返回键，否则为 null
+     */
+    Key key(String text, PinyinFormat format, String separator, int mode, long generation) {
+        return text.length() > maxInputLength ? null : new Key(text, format, separator, mode, generation);
+    }
+
+    String get(Key key) {
+        final Node node = data.get(key);
+        if (null == node) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (lock.tryLock()) {
+            try {
+                onAccess(node);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    void put(Key key, String value) {
+        final int weight = ENTRY_OVERHEAD + 2 * (key.text.length() + key.separator.length() + value.length());
+        if (weight > maxWeight) return;
+        final Node node = new Node(key, value, spread(key.hashCode()), weight);
+        lock.lock();
+        try {
+            final Node previous = data.put(key, node);
+            if (null != previous) unlink(previous);
+            sketch.increment(node.hash);
+            node.queue = WINDOW;
+            window.add(node);
+            while (window.weight > windowMax && null != window.head) {
+                final Node candidate = window.head;
+                window.remove(candidate);
+                admit(candidate);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onAccess(Node node) {
+        if (node.queue == REMOVED) return;
+        sketch.increment(node.hash);
+        switch (node.queue) {
+            case WINDOW -> {
+                window.remove(node);
+                window.add(node);
+            }
+            case PROBATION -> {
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protect.add(node);
+                while (protect.weight > protectedMax && null != protect.head) {
+                    final Node demoted = protect.head;
+                    protect.remove(demoted);
+                    demoted.queue = PROBATION;
+                    probation.add(demoted);
+                }
+            }
+            case PROTECTED -> {
+                protect.remove(node);
+                protect.add(node);
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 离开窗口的条目与主区最久未访问的条目比较频率，频率更高者留下
+     */
+    private void admit(Node candidate) {
+        final long mainMax = maxWeight - windowMax;
+        while (probation.weight + protect.weight + candidate.weight > mainMax) {
+            final Node victim = null != probation.head ? probation.head : protect.head;
+            if (null == victim || sketch.frequency(candidate.hash) <= sketch.frequency(victim.hash)) {
+                rejections.increment();
+                evict(candidate);
+                return;
+            }
+            unlink(victim);
+            evict(victim);
+        }
+        candidate.queue = PROBATION;
+        probation.add(candidate);
+    }
+
+    private void unlink(Node node) {
+        switch (node.queue) {
+            case WINDOW -> window.remove(node);
+            case PROBATION -> probation.remove(node);
+            case PROTECTED -> protect.remove(node);
+            default -> {
+            }
+        }
+        node.queue = REMOVED;
+    }
+
+    private void evict(Node node) {
+        node.queue = REMOVED;
+        data.remove(node.key, node);
+        evictions.increment();
+    }
+
+    /**
+     * 清空全部条目，统计值保留
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            data.values().forEach(node -> node.queue = REMOVED);
+            data.clear();
+            window.clear();
+            probation.clear();
+            protect.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), rejections.sum(),
+                    data.size(), window.weight + probation.weight + protect.weight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ hash >>> 16;
+    }
+
+    /**
+     * 4 位计数器的 Count-Min 草图，每 64 位存 16 个计数器；累计增量达到 10 倍容量时所有计数减半，使旧的热度逐渐衰减
+     */
+    private static final class FrequencySketch {
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final int[] SEEDS = {0x97CB3127, 0xB492B66F, 0x9AE16A3B, 0xC2B2AE35};
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            final int size = Math.max(8, Integer.highestOneBit(Math.max(1, expectedEntries) - 1) << 1);
+            this.table = new long[size];
+            this.tableMask = size - 1;
+            this.sampleSize = 10 * size;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash + SEEDS[row]) * SEEDS[row];
+            return (h ^ h >>> 17) & tableMask;
+        }
+
+        private static int offset(int hash, int row) {
+            return (((hash >>> (row << 3)) & 0xF) << 2);
+        }
+
+        int frequency(int hash) {
+            int frequency = 15;
+            for (int row = 0; row < 4; row++) {
+                final int count = (int) (table[index(hash, row)] >>> offset(hash, row)) & 0xF;
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int row = 0; row < 4; row++) {
+                final int index = index(hash, row);
+                final int offset = offset(hash, row);
+                if (((table[index] >>> offset) & 0xF) != 0xF) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions >>>= 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package org.appxi.smartcn.pinyin;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * 文本的拼音结果，不可变。
+ * <p>
+ * 由原文与每个字的拼音序号（short[]，没有拼音的字为 -1，补充平面汉字的低代理为 -2）构成，每字约 2 字节，另以位图记录词的起始位置。
+ * {@link #subSequence(int, int)} 共享底层数组，不复制；各格式的字符串在首次访问时生成并缓存。
+ * 需要旧的 List&lt;Map.Entry&lt;Character, Pinyin&gt;&gt; 形式时使用 {@link #asList()}。
+ *
+ * @see PinyinConvertor#sequence(CharSequence)
+ */
+public final class PinyinSequence {
+    private static final Pinyin[] PINYINS = Pinyin.values();
+    static final short NONE = -1;
+    static final short TAIL = -2;
+
+    private final String source;
+    private final short[] ordinals;
+    private final long[] wordStarts;
+    private final int offset;
+    private final int length;
+
+    private final String[] formatted = new String[PinyinFormat.values().length];
+    private volatile int[] syllableOffsets;
+    private int hash;
+
+    PinyinSequence(String source, short[] ordinals, long[] wordStarts, int offset, int length) {
+        this.source = source;
+        this.ordinals = ordinals;
+        this.wordStarts = wordStarts;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * 由词网生成
+     */
+    static PinyinSequence of(String source, Pinyin[][] wordNet) {
+        final short[] ordinals = new short[wordNet.length];
+        final long[] wordStarts = new long[(wordNet.length + 63) >>> 6];
+        for (int i = 0; i < wordNet.length; ) {
+            wordStarts[i >>> 6] |= 1L << i;
+            final Pinyin[] entry = wordNet[i];
+            if (entry == PinyinConvertor.TAIL) {
+                wordStarts[i >>> 6] &= ~(1L << i);
+                ordinals[i++] = TAIL;
+                continue;
+            }
+            if (null == entry) {
+                ordinals[i++] = NONE;
+                continue;
+            }
+            for (Pinyin pinyin : entry) {
+                ordinals[i++] = null == pinyin ? TAIL : (short) pinyin.ordinal();
+            }
+        }
+        return new PinyinSequence(source, ordinals, wordStarts, 0, wordNet.length);
+    }
+
+    /**
+     * @return 字符数
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return 原文（本序列对应的部分）
+     */
+    public String source() {
+        return source.substring(offset, offset + length);
+    }
+
+    public char charAt(int index) {
+        return source.charAt(offset + checkIndex(index));
+    }
+
+    /**
+     * @return 第 index 个字的拼音，没有拼音时为 null
+     */
+    public Pinyin pinyin(int index) {
+        final short ordinal = ordinals[offset + checkIndex(index)];
+        return ordinal < 0 ? null : PINYINS[ordinal];
+    }
+
+    public boolean hasPinyin(int index) {
+        return ordinals[offset + checkIndex(index)] >= 0;
+    }
+
+    /**
+     * 第 index 个字是否为一个词（词典词条或单个无拼音字符）的开始；序列的第一个字总是词的开始
+     */
+    public boolean isWordStart(int index) {
+        checkIndex(index);
+        final int i = offset + index;
+        return index == 0 || (wordStarts[i >>> 6] & 1L << i) != 0;
+    }
+
+    /**
+     * @return 包含第 index 个字的词的起始位置
+     */
+    public int wordStart(int index) {
+        checkIndex(index);
+        while (!isWordStart(index)) index--;
+        return index;
+    }
+
+    /**
+     * @return 包含第 index 个字的词的结束位置（不含）
+     */
+    public int wordEnd(int index) {
+        checkIndex(index);
+        index++;
+        while (index < length && !isWordStart(index)) index++;
+        return index;
+    }
+
+    /**
+     * 零复制的子序列，与本序列共享底层数组
+     *
+     * @param start 起始位置（含）
+     * @param end   结束位置（不含）
+     * @return 子序列
+     */
+    public PinyinSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        if (start == 0 && end == length) return this;
+        return new PinyinSequence(source, ordinals, wordStarts, offset + start, end - start);
+    }
+
+    /**
+     * 依次连接分段转换的结果，各段须在词与消歧上下文的边界处切分（见 {@link PinyinStreams#segments(CharSequence, int)}）
+     *
+     * @param source 各段原文连接而成的全文
+     */
+    static PinyinSequence concat(String source, List<PinyinSequence> parts) {
+        if (parts.size() == 1) return parts.get(0);
+        final short[] ordinals = new short[source.length()];
+        final long[] wordStarts = new long[(ordinals.length + 63) >>> 6];
+        int position = 0;
+        for (PinyinSequence part : parts) {
+            System.arraycopy(part.ordinals, part.offset, ordinals, position, part.length);
+            for (int i = 0; i < part.length; i++, position++) {
+                if (part.isWordStart(i)) wordStarts[position >>> 6] |= 1L << position;
+            }
+        }
+        if (position != ordinals.length) throw new IllegalArgumentException("parts do not cover the source");
+        return new PinyinSequence(source, ordinals, wordStarts, 0, ordinals.length);
+    }
+
+    /**
+     * @return 有拼音的字数
+     */
+    public int syllableCount() {
+        return syllableOffsets().length;
+    }
+
+    /**
+     * 字位置到音节序号的映射
+     *
+     * @param index 字的位置
+     * @return 该字是第几个音节，没有拼音时为 -1
+     */
+    public int syllableIndex(int index) {
+        if (!hasPinyin(index)) return -1;
+        return Arrays.binarySearch(syllableOffsets(), index);
+    }
+
+    /**
+     * 音节序号到字位置的映射
+     *
+     * @param syllableIndex 第几个音节
+     * @return 该音节对应的字的位置
+     */
+    public int charIndex(int syllableIndex) {
+        return syllableOffsets()[syllableIndex];
+    }
+
+    private int[] syllableOffsets() {
+        int[] result = syllableOffsets;
+        if (null == result) {
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                if (ordinals[offset + i] >= 0) count++;
+            }
+            result = new int[count];
+            for (int i = 0, j = 0; i < length; i++) {
+                if (ordinals[offset + i] >= 0) result[j++] = i;
+            }
+            syllableOffsets = result;
+        }
+        return result;
+    }
+
+    /**
+     * 不带声调，以空格分隔，如 zhong guo
+     */
+    public String toneless() {
+        return formatted(PinyinFormat.WITHOUT_TONE, " ");
+    }
+
+    /**
+     * 带声调符号，以空格分隔，如 zhōng guó
+     */
+    public String toneMarks() {
+        return formatted(PinyinFormat.WITH_TONE_MARK, " ");
+    }
+
+    /**
+     * 带声调数字，以空格分隔，如 zhong1 guo2
+     */
+    public String toneNumbers() {
+        return formatted(PinyinFormat.WITH_TONE_NUMBER, " ");
+    }
+
+    /**
+     * 首字母，无分隔，如 zg
+     */
+    public String initials() {
+        return formatted(PinyinFormat.FIRST_CHAR, "");
+    }
+
+    private String formatted(PinyinFormat format, String separator) {
+        String result = formatted[format.ordinal()];
+        if (null == result) {
+            result = format(format, separator);
+            formatted[format.ordinal()] = result;
+        }
+        return result;
+    }
+
+    /**
+     * 每个字一项、以 separator 连接，没有拼音的字保留原字符，与 {@link PinyinHelper#convert(String, String, boolean)} 一致
+     *
+     * @param format    拼音格式
+     * @param separator 分隔符
+     * @return 拼音
+     */
+    public String format(PinyinFormat format, String separator) {
+        final PinyinRenderer renderer = PinyinConvertor.ONE.renderer(format, separator);
+        final StringBuilder buf = new StringBuilder(length * (6 + separator.length()));
+        for (int i = 0, items = 0; i < length; i++) {
+            final short ordinal = ordinals[offset + i];
+            if (ordinal == TAIL) continue;
+            if (items++ > 0) buf.append(separator);
+            if (ordinal == NONE) {
+                final char ch = source.charAt(offset + i);
+                buf.append(ch);
+                // 没有读音的代理对作为一项
+                if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(source.charAt(offset + i + 1))) {
+                    buf.append(source.charAt(offset + ++i));
+                }
+            }
+            else buf.append(renderer.syllable(ordinal));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * @return 读音的指纹
+     * @see PinyinFingerprint
+     */
+    public long fingerprint(PinyinFingerprint.Mode mode) {
+        return PinyinFingerprint.of(ordinals, source, offset, offset + length, mode);
+    }
+
+    /**
+     * 旧的列表形式的只读视图，每个字符一项，元素在访问时生成；补充平面汉字的读音在高代理一项
+     */
+    public List<Map.Entry<Character, Pinyin>> asList() {
+        return new EntryList();
+    }
+
+    private final class EntryList extends AbstractList<Map.Entry<Character, Pinyin>> implements RandomAccess {
+        @Override
+        public Map.Entry<Character, Pinyin> get(int index) {
+            return new AbstractMap.SimpleImmutableEntry<>(charAt(index), pinyin(index));
+        }
+
+        @Override
+        public int size() {
+            return length;
+        }
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        return index;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof PinyinSequence other) || other.length != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (ordinals[offset + i] != other.ordinals[other.offset + i]
+                || source.charAt(offset + i) != other.source.charAt(other.offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if (result == 0) {
+            for (int i = 0; i < length; i++) {
+                result = 31 * (31 * result + source.charAt(offset + i)) + ordinals[offset + i];
+            }
+            hash = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toneless();
+    }
+}
@@ -0,0 +1,187 @@
+package org.appxi.smartcn.pinyin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * 配合 java.util.stream 并行转换：
+ * <pre>
+ * lines.parallelStream().map(PinyinStreams.pinyin(PinyinFormat.WITHOUT_TONE, " "))...
+ * lines.parallelStream().collect(PinyinStreams.toPinyin(PinyinFormat.WITHOUT_TONE, " "))
+ * PinyinStreams.sequence(largeText, 64 * 1024)
+ * </pre>
+ * 映射函数以线程本地的 StringBuilder 作缓冲区；收集器的每个中间容器（并行时即每个工作线程的分段）带一个缓冲区，
+ * 结果直接写入其中，不经过 List&lt;Map.Entry&lt;Character, Pinyin&gt;&gt; 之类的装箱形式。
+ * 单个大文本用 {@link #segments(CharSequence, int)} 在安全的边界处拆分后并行转换。
+ */
+public final class PinyinStreams {
+    private static final ThreadLocal<StringBuilder> SCRATCH = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static final int MAX_SCRATCH = 64 * 1024;
+
+    private PinyinStreams() {
+    }
+
+    /**
+     * 拆分大文本的 Spliterator，每次产出约 targetSize 个字符的一段。
+     * <p>
+     * 只在空白或句读（。！？；，、）之后切分：这些字符没有拼音，不在词典的词条中时，各段分别转换的结果与整体转换相同；
+     * 附近找不到边界时不切分。以下情况整个文本作为一段，不拆分：
+     * 词典（含用户的 pinyin.txt）中有词条含这些字符，在此切分会切断词条；
+     * 设置了 {@link PinyinDisambiguator}，消歧以相邻的原始字符（包括这些字符）为上下文，段首、段尾会失去这些上下文，
+     * 如“好，行”的“行”。
+     *
+     * @param text       文本，拆分期间不可修改
+     * @param targetSize 每段的目标字符数
+     */
+    public static Spliterator<CharSequence> segments(CharSequence text, int targetSize) {
+        if (targetSize <= 0) throw new IllegalArgumentException("targetSize: " + targetSize);
+        final int size = PinyinConvertor.ONE.splittable() ? targetSize : Math.max(targetSize, text.length());
+        return new SegmentSpliterator(text, 0, text.length(), size);
+    }
+
+    /**
+     * 并行转换大文本，结果与 {@link PinyinConvertor#sequence(CharSequence)} 相同；
+     * 不可拆分时（见 {@link #segments(CharSequence, int)}）在当前线程整体转换
+     *
+     * @param text       文本
+     * @param targetSize 每段的目标字符数，较短的文本不拆分
+     * @return 拼音序列
+     */
+    public static PinyinSequence sequence(CharSequence text, int targetSize) {
+        final String source = text.toString();
+        if (source.length() <= targetSize || !PinyinConvertor.ONE.splittable()) return PinyinConvertor.ONE.sequence(source);
+        final List<PinyinSequence> parts = StreamSupport.stream(segments(source, targetSize), true)
+                .map(PinyinConvertor.ONE::sequence)
+                .collect(Collectors.toList());
+        return PinyinSequence.concat(source, parts);
+    }
+
+    /**
+     * 用于 Stream.map 的转换函数，结果与 {@link PinyinConvertor#pinyin(String, PinyinFormat, String)} 相同
+     */
+    public static Function<CharSequence, String> pinyin(PinyinFormat format, String separator) {
+        return text -> {
+            final StringBuilder scratch = SCRATCH.get();
+            scratch.setLength(0);
+            PinyinConvertor.ONE.pinyin(text, format, separator, scratch);
+            final String result = scratch.toString();
+            if (scratch.capacity() > MAX_SCRATCH) SCRATCH.remove();
+            return result;
+        };
+    }
+
+    /**
+     * 收集为各元素的拼音列表，顺序与流一致
+     */
+    public static Collector<CharSequence, ?, List<String>> toPinyin(PinyinFormat format, String separator) {
+        final class Container {
+            final List<String> results = new ArrayList<>();
+            final StringBuilder scratch = new StringBuilder(256);
+        }
+        return Collector.of(Container::new,
+                (container, text) -> {
+                    container.scratch.setLength(0);
+                    PinyinConvertor.ONE.pinyin(text, format, separator, container.scratch);
+                    container.results.add(container.scratch.toString());
+                },
+                (left, right) -> {
+                    left.results.addAll(right.results);
+                    return left;
+                },
+                container -> container.results);
+    }
+
+    /**
+     * 收集为一个字符串：各元素的拼音以 delimiter 连接，直接写入结果缓冲区，不生成各元素的中间字符串
+     */
+    public static Collector<CharSequence, ?, String> joining(PinyinFormat format, String separator, CharSequence delimiter) {
+        final class Container {
+            final StringBuilder result = new StringBuilder(256);
+            boolean empty = true;
+        }
+        return Collector.of(Container::new,
+                (container, text) -> {
+                    if (!container.empty) container.result.append(delimiter);
+                    container.empty = false;
+                    PinyinConvertor.ONE.pinyin(text, format, separator, container.result);
+                },
+                (left, right) -> {
+                    if (right.empty) return left;
+                    if (!left.empty) left.result.append(delimiter);
+                    left.result.append(right.result);
+                    left.empty = false;
+                    return left;
+                },
+                container -> container.result.toString());
+    }
+
+    private static final class SegmentSpliterator implements Spliterator<CharSequence> {
+        private final CharSequence text;
+        private int from;
+        private final int to;
+        private final int targetSize;
+
+        SegmentSpliterator(CharSequence text, int from, int to, int targetSize) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+            this.targetSize = targetSize;
+        }
+
+        /**
+         * @return at 处或其后第一个边界字符之后的位置，找不到时为 to
+         */
+        private int boundaryAfter(int at) {
+            for (int i = Math.max(from, at); i < to; i++) {
+                if (PinyinTxtParser.isBoundary(text.charAt(i))) return i + 1;
+            }
+            return to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super CharSequence> action) {
+            if (from >= to) return false;
+            final int end = to - from <= targetSize ? to : boundaryAfter(from + targetSize - 1);
+            final CharSequence segment = text.subSequence(from, end);
+            from = end;
+            action.accept(segment);
+            return true;
+        }
+
+        @Override
+        public Spliterator<CharSequence> trySplit() {
+            if (to - from < targetSize * 2L) return null;
+            // 从中点向后找边界，找不到则向前找
+            int split = boundaryAfter(from + (to - from) / 2);
+            if (split >= to) {
+                split = from;
+                for (int i = from + (to - from) / 2; i > from; i--) {
+                    if (PinyinTxtParser.isBoundary(text.charAt(i - 1))) {
+                        split = i;
+                        break;
+                    }
+                }
+            }
+            if (split <= from || split >= to) return null;
+            final Spliterator<CharSequence> prefix = new SegmentSpliterator(text, from, split, targetSize);
+            from = split;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (to - from + targetSize - 1) / targetSize;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.appxi.smartcn.pinyin;
+
+/**
+ * 拼音分词流，供全文检索的分析器使用（类似 Lucene 的 TokenStream，但不依赖 Lucene）。
+ * <p>
+ * 对每个词典匹配依次输出：每个字的拼音（{@link Type#SYLLABLE}），多字词的整词拼音（{@link Type#WORD}）
+ * 与首字母（{@link Type#INITIALS}）；整词与首字母和该词第一个字位于同一位置（位置增量为 0）。
+ * 没有拼音的字符不输出。
+ * <p>
+ * 当前词元通过可复用的属性访问（{@link #term()}、{@link #startOffset()} 等），分词过程中不为每个词元分配对象。
+ * 实例不是线程安全的，可在 {@link #reset(CharSequence)} 后重复使用。
+ * <pre>
+ * stream.reset(text);
+ * while (stream.incrementToken()) {
+ *     stream.term(); stream.startOffset(); stream.endOffset(); stream.type();
+ * }
+ * </pre>
+ */
+public final class PinyinTokenStream {
+    /**
+     * 词元类型
+     */
+    public enum Type {
+        /**
+         * 单字拼音
+         */
+        SYLLABLE,
+        /**
+         * 多字词的整词拼音，如 yinhang
+         */
+        WORD,
+        /**
+         * 多字词的首字母，如 yh
+         */
+        INITIALS,
+    }
+
+    private final PinyinRenderer renderer;
+    private final PinyinRenderer initialsRenderer;
+    private final boolean emitSyllables;
+    private final boolean emitWords;
+    private final boolean emitInitials;
+
+    private final Term term = new Term();
+    private int startOffset;
+    private int endOffset;
+    private int positionIncrement;
+    private Type type;
+
+    private char[] chars = new char[0];
+    private Pinyin[][] wordNet = new Pinyin[0][];
+    private int index;
+    private int step;
+    private int position;
+    private int lastPosition;
+
+    /**
+     * @param format        拼音格式
+     * @param emitSyllables 是否输出单字拼音
+     * @param emitWords     是否输出多字词的整词拼音
+     * @param emitInitials  是否输出多字词的首字母
+     */
+    public PinyinTokenStream(PinyinFormat format, boolean emitSyllables, boolean emitWords, boolean emitInitials) {
+        this.renderer = PinyinConvertor.ONE.renderer(format, "");
+        this.initialsRenderer = PinyinConvertor.ONE.renderer(PinyinFormat.FIRST_CHAR, "");
+        this.emitSyllables = emitSyllables;
+        this.emitWords = emitWords;
+        this.emitInitials = emitInitials;
+    }
+
+    /**
+     * 不带声调，输出全部类型的词元
+     */
+    public PinyinTokenStream() {
+        this(PinyinFormat.WITHOUT_TONE, true, true, true);
+    }
+
+    /**
+     * 设置新的文本并回到开始位置
+     *
+     * @param text 文本
+     * @return this
+     */
+    public PinyinTokenStream reset(CharSequence text) {
+        this.chars = PinyinConvertor.toChars(text);
+        this.wordNet = PinyinConvertor.ONE.wordNet(chars);
+        this.index = 0;
+        this.step = 0;
+        this.position = 0;
+        this.lastPosition = -1;
+        this.type = null;
+        this.term.length = 0;
+        return this;
+    }
+
+    /**
+     * 前进到下一个词元
+     *
+     * @return 没有更多词元时为 false
+     */
+    public boolean incrementToken() {
+        while (index < wordNet.length) {
+            final Pinyin[] entry = wordNet[index];
+            if (null == entry || entry == PinyinConvertor.TAIL) {
+                index++;
+                continue;
+            }
+            // 每个词条的输出顺序：第1字, 整词, 首字母, 第2字, ..., 第n字
+            final int current = step++;
+            if (current >= entry.length + 2) {
+                index += entry.length;
+                position += syllables(entry, entry.length);
+                step = 0;
+                continue;
+            }
+            if (current == 0 || current > 2) {
+                if (!emitSyllables) continue;
+                final int offset = current == 0 ? 0 : current - 2;
+                // 多字词条中补充平面汉字的低代理位置
+                if (null == entry[offset]) continue;
+                term.set(renderer.render(entry, offset));
+                // 补充平面汉字占两个字符
+                final int end = index + offset + 1;
+                final boolean pair = offset + 1 < entry.length
+                        ? null == entry[offset + 1]
+                        : end < wordNet.length && wordNet[end] == PinyinConvertor.TAIL;
+                emit(Type.SYLLABLE, index + offset, pair ? end + 1 : end, position + syllables(entry, offset));
+                return true;
+            }
+            if (entry.length < 2) continue;
+            if (current == 1) {
+                if (!emitWords) continue;
+                term.set(renderer.render(entry));
+                emit(Type.WORD, index, index + entry.length, position);
+            } else {
+                if (!emitInitials) continue;
+                term.set(initialsRenderer.render(entry));
+                emit(Type.INITIALS, index, index + entry.length, position);
+            }
+            return true;
+        }
+        type = null;
+        return false;
+    }
+
+    /**
+     * 词条前 to 项中的拼音数，不计补充平面汉字的低代理位置
+     */
+    private static int syllables(Pinyin[] entry, int to) {
+        int count = 0;
+        for (int i = 0; i < to; i++) {
+            if (null != entry[i]) count++;
+        }
+        return count;
+    }
+
+    private void emit(Type type, int start, int end, int position) {
+        this.type = type;
+        this.startOffset = start;
+        this.endOffset = end;
+        this.positionIncrement = position - lastPosition;
+        this.lastPosition = position;
+    }
+
+    /**
+     * 当前词元的文本，每次 {@link #incrementToken()} 后内容改变，实例不变
+     */
+    public CharSequence term() {
+        return term;
+    }
+
+    /**
+     * 当前词元文本的缓冲区，有效长度为 {@link #termLength()}
+     */
+    public char[] termBuffer() {
+        return term.buffer;
+    }
+
+    public int termLength() {
+        return term.length;
+    }
+
+    /**
+     * 当前词元在原文中的起始位置（含）
+     */
+    public int startOffset() {
+        return startOffset;
+    }
+
+    /**
+     * 当前词元在原文中的结束位置（不含）
+     */
+    public int endOffset() {
+        return endOffset;
+    }
+
+    /**
+     * 相对上一个词元的位置增量，与上一个词元同位置时为 0
+     */
+    public int positionIncrement() {
+        return positionIncrement;
+    }
+
+    public Type type() {
+        return type;
+    }
+
+    private static final class Term implements CharSequence {
+        private char[] buffer = new char[16];
+        private int length;
+
+        void set(char[] src) {
+            if (src.length > buffer.length) {
+                buffer = new char[Math.max(src.length, buffer.length * 2)];
+            }
+            System.arraycopy(src, 0, buffer, 0, src.length);
+            length = src.length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index >= length) throw new IndexOutOfBoundsException(index);
+            return buffer[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buffer, 0, length);
+        }
+    }
+}
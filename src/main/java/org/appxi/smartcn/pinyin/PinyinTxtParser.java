@@ -0,0 +1,139 @@
+package org.appxi.smartcn.pinyin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 解析 data.txt / pinyin.txt（每行为 词=读音,读音...）。
+ * <p>
+ * 不依赖 {@link PinyinConvertor} 与日志，native image 构建时初始化 {@link PinyinImageHeap} 也使用此类。
+ */
+final class PinyinTxtParser {
+    private PinyinTxtParser() {
+    }
+
+    /**
+     * 逐行解析并直接放入 primaryMap，后出现的词条覆盖先出现的；相同的读音（如 yi1）共用一个数组
+     *
+     * @param interned 读音文本到读音数组的映射，多个来源共用
+     * @param onError  有问题的行（词条，异常）
+     */
+    static void parse(BufferedReader reader, TreeMap<String, Pinyin[]> primaryMap, Map<String, Pinyin[]> interned,
+                      BiConsumer<String, Exception> onError) throws IOException {
+        for (String line; null != (line = reader.readLine()); ) {
+            final int sep = line.indexOf('=');
+            if (sep < 0) continue;
+            final String v = line.substring(sep + 1);
+            Pinyin[] valArr = interned.get(v);
+            if (null == valArr) {
+                try {
+                    valArr = parsePinyins(v);
+                } catch (Exception e) {
+                    onError.accept(line, e);
+                    continue;
+                }
+                interned.put(v, valArr);
+            }
+            primaryMap.put(line.substring(0, sep), valArr);
+        }
+    }
+
+    /**
+     * 解析逗号分隔的读音，如 yi1,ding1；与 String.split 一致，忽略末尾的空项
+     */
+    static Pinyin[] parsePinyins(String value) {
+        int end = value.length();
+        while (end > 0 && value.charAt(end - 1) == ',') end--;
+        if (end == 0) throw new IllegalArgumentException("empty pinyin");
+        value = value.substring(0, end);
+        int count = 1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == ',') count++;
+        }
+        final Pinyin[] result = new Pinyin[count];
+        for (int i = 0, from = 0; i < count; i++) {
+            int to = value.indexOf(',', from);
+            if (to < 0) to = value.length();
+            result[i] = Pinyin.valueOf(value.substring(from, to));
+            from = to + 1;
+        }
+        return result;
+    }
+
+    /**
+     * @return 词条中最小的字符，词典中小于它的字符都不可能参与匹配；没有词条时为 Character.MAX_VALUE
+     */
+    static char minKeyChar(Iterable<String> keys) {
+        char min = Character.MAX_VALUE;
+        for (String key : keys) {
+            for (int i = 0; i < key.length(); i++) {
+                if (key.charAt(i) < min) min = key.charAt(i);
+            }
+        }
+        return min;
+    }
+
+    /**
+     * 大文本拆分后分别转换的边界：空白或句读（。！？；，、），在其后切分
+     */
+    static boolean isBoundary(char ch) {
+        return switch (ch) {
+            case '。', '！', '？', '；', '，', '、' -> true;
+            default -> Character.isWhitespace(ch);
+        };
+    }
+
+    /**
+     * @return 是否有词条含 {@link #isBoundary} 的字符（如用户词典中的“卡拉 OK”），此时在边界处拆分会切断这些词条
+     */
+    static boolean containsBoundary(Iterable<String> keys) {
+        for (String key : keys) {
+            for (int i = 0; i < key.length(); i++) {
+                if (isBoundary(key.charAt(i))) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 补充平面的单字移出 primaryMap 放入单独的码位表；含补充平面汉字的多字词条留在词典中，
+     * 读音展开为每个 UTF-16 代码单元一项，与词典的匹配长度一致，其中补充平面汉字的低代理位置为 null。
+     * 有孤立代理或读音数与字数不符的词条无法对齐，移除
+     *
+     * @param onUnsupported 被移除的词条
+     */
+    static SupplementaryTable splitSupplementary(TreeMap<String, Pinyin[]> primaryMap, Consumer<String> onUnsupported) {
+        final SupplementaryTable supplementary = new SupplementaryTable();
+        primaryMap.entrySet().removeIf(entry -> {
+            final String key = entry.getKey();
+            if (key.length() == 2 && Character.isSurrogatePair(key.charAt(0), key.charAt(1))) {
+                supplementary.put(key.codePointAt(0), entry.getValue());
+                return true;
+            }
+            if (key.chars().noneMatch(ch -> Character.isSurrogate((char) ch))) return false;
+            final Pinyin[] value = entry.getValue();
+            final Pinyin[] expanded = new Pinyin[key.length()];
+            int count = 0;
+            for (int i = 0; i < key.length(); ) {
+                final int codePoint = key.codePointAt(i);
+                if (Character.isSurrogate((char) codePoint) || count == value.length) {
+                    onUnsupported.accept(key);
+                    return true;
+                }
+                expanded[i] = value[count++];
+                i += Character.charCount(codePoint);
+            }
+            if (count != value.length) {
+                onUnsupported.accept(key);
+                return true;
+            }
+            entry.setValue(expanded);
+            return false;
+        });
+        return supplementary;
+    }
+}
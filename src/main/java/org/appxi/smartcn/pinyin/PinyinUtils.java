@@ -143,6 +143,24 @@ class PinyinUtils {
         return result;
     }
 
+    /**
+     * 是否为 CJK 统一汉字（基本区、扩展 A 区、兼容汉字）
+     *
+     * @param ch 字符
+     * @return 是否为汉字
+     */
+    public static boolean isHan(char ch) {
+        return (ch >= 0x4E00 && ch <= 0x9FFF) || (ch >= 0x3400 && ch <= 0x4DBF) || (ch >= 0xF900 && ch <= 0xFAFF);
+    }
+
+    /**
+     * 同 {@link #isHan(char)}，另含扩展 B 至 H 区与兼容补充区
+     */
+    public static boolean isHan(int codePoint) {
+        if (codePoint < 0x10000) return isHan((char) codePoint);
+        return (codePoint >= 0x20000 && codePoint <= 0x323AF) || (codePoint >= 0x2F800 && codePoint <= 0x2FA1F);
+    }
+
     private PinyinUtils() {
     }
 }
@@ -0,0 +1,60 @@
+package org.appxi.smartcn.pinyin;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 补充平面汉字（扩展 B 区及以后，UTF-16 中为代理对）的读音表。
+ * <p>
+ * 词典匹配以 UTF-16 代码单元进行，单个代理对的单字词条不进入词典，而是放在此表中按码位查找；
+ * 含补充平面汉字的多字词条仍在词典中，参见 {@link PinyinTxtParser#splitSupplementary}。
+ * 两级稀疏表：第一级以码位的高位分页，只为出现过的页分配 256 项的第二级数组；建成后只读。
+ */
+final class SupplementaryTable {
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+    private final Pinyin[][][] pages = new Pinyin[(Character.MAX_CODE_POINT + 1) >>> PAGE_BITS][][];
+    private int size;
+
+    /**
+     * @return 码位的读音，没有时为 null
+     */
+    Pinyin[] get(int codePoint) {
+        final Pinyin[][] page = pages[codePoint >>> PAGE_BITS];
+        return null == page ? null : page[codePoint & PAGE_MASK];
+    }
+
+    void put(int codePoint, Pinyin[] value) {
+        Pinyin[][] page = pages[codePoint >>> PAGE_BITS];
+        if (null == page) {
+            page = pages[codePoint >>> PAGE_BITS] = new Pinyin[1 << PAGE_BITS][];
+        }
+        if (null == page[codePoint & PAGE_MASK]) size++;
+        page[codePoint & PAGE_MASK] = value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 写出为：条目数，然后每条为 码位、读音数、读音序号...
+     */
+    void save(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        for (int p = 0; p < pages.length; p++) {
+            final Pinyin[][] page = pages[p];
+            if (null == page) continue;
+            for (int i = 0; i < page.length; i++) {
+                final Pinyin[] value = page[i];
+                if (null == value) continue;
+                out.writeInt(p << PAGE_BITS | i);
+                out.writeInt(value.length);
+                for (Pinyin pinyin : value) {
+                    out.writeInt(pinyin.ordinal());
+                }
+            }
+        }
+    }
+}
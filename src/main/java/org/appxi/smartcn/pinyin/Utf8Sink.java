@@ -0,0 +1,156 @@
+package org.appxi.smartcn.pinyin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * UTF-8 字节输出，非 CJK 字符直接编码写出，不经过中间字符串。
+ * <p>
+ * 写出失败时抛出 {@link UncheckedIOException}，由调用方还原为 {@link IOException}。
+ */
+abstract class Utf8Sink {
+    private char highSurrogate;
+
+    abstract void put(byte b);
+
+    abstract void put(byte[] bytes, int off, int len);
+
+    final void write(byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 写出已编码的字节（预先生成的拼音、分隔符）；之前未配对的高代理先写为 '?'，保持输出顺序
+     */
+    final void write(byte[] bytes, int off, int len) {
+        if (highSurrogate != 0) malformed();
+        put(bytes, off, len);
+    }
+
+    void flush() {
+    }
+
+    /**
+     * 结束写出：补全未配对的代理字符并写出缓冲区
+     */
+    final void end() {
+        if (highSurrogate != 0) malformed();
+        flush();
+    }
+
+    /**
+     * 以 UTF-8 编码写出一个字符，代理对跨两次调用拼合，孤立的代理字符写为 '?'
+     */
+    final void write(char ch) {
+        if (ch < 0x80) {
+            if (highSurrogate != 0) malformed();
+            put((byte) ch);
+        } else if (Character.isHighSurrogate(ch)) {
+            if (highSurrogate != 0) malformed();
+            highSurrogate = ch;
+        } else if (Character.isLowSurrogate(ch)) {
+            if (highSurrogate == 0) {
+                put((byte) '?');
+                return;
+            }
+            final int cp = Character.toCodePoint(highSurrogate, ch);
+            highSurrogate = 0;
+            put((byte) (0xF0 | (cp >> 18)));
+            put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+            put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+            put((byte) (0x80 | (cp & 0x3F)));
+        } else {
+            if (highSurrogate != 0) malformed();
+            if (ch < 0x800) {
+                put((byte) (0xC0 | (ch >> 6)));
+            } else {
+                put((byte) (0xE0 | (ch >> 12)));
+                put((byte) (0x80 | ((ch >> 6) & 0x3F)));
+            }
+            put((byte) (0x80 | (ch & 0x3F)));
+        }
+    }
+
+    private void malformed() {
+        highSurrogate = 0;
+        put((byte) '?');
+    }
+
+    static Utf8Sink of(ByteBuffer buffer) {
+        return new Utf8Sink() {
+            @Override
+            void put(byte b) {
+                buffer.put(b);
+            }
+
+            @Override
+            void put(byte[] bytes, int off, int len) {
+                buffer.put(bytes, off, len);
+            }
+        };
+    }
+
+    static Utf8Sink of(OutputStream stream) {
+        return new Buffered() {
+            @Override
+            void drain(byte[] buf, int len) throws IOException {
+                stream.write(buf, 0, len);
+            }
+        };
+    }
+
+    static Utf8Sink of(WritableByteChannel channel) {
+        return new Buffered() {
+            @Override
+            void drain(byte[] buf, int len) throws IOException {
+                final ByteBuffer buffer = ByteBuffer.wrap(buf, 0, len);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        };
+    }
+
+    /**
+     * 先写入固定大小的缓冲区，满了或结束时整块写出
+     */
+    private abstract static class Buffered extends Utf8Sink {
+        private final byte[] buf = new byte[8192];
+        private int pos;
+
+        abstract void drain(byte[] buf, int len) throws IOException;
+
+        @Override
+        final void put(byte b) {
+            if (pos == buf.length) flush();
+            buf[pos++] = b;
+        }
+
+        @Override
+        final void put(byte[] bytes, int off, int len) {
+            while (len > 0) {
+                if (pos == buf.length) flush();
+                final int n = Math.min(len, buf.length - pos);
+                System.arraycopy(bytes, off, buf, pos, n);
+                pos += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        final void flush() {
+            if (pos == 0) return;
+            try {
+                drain(buf, pos);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                pos = 0;
+            }
+        }
+    }
+}
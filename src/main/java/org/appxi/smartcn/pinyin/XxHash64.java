@@ -0,0 +1,127 @@
+package org.appxi.smartcn.pinyin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * 流式 xxHash64，用于判断词典来源内容是否变化
+ */
+final class XxHash64 {
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final long seed;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private final byte[] buffer = new byte[32];
+    private int buffered;
+    private long total;
+
+    XxHash64(long seed) {
+        this.seed = seed;
+        this.v1 = seed + P1 + P2;
+        this.v2 = seed + P2;
+        this.v3 = seed;
+        this.v4 = seed - P1;
+    }
+
+    XxHash64 update(byte[] bytes, int offset, int length) {
+        total += length;
+        if (buffered + length < 32) {
+            System.arraycopy(bytes, offset, buffer, buffered, length);
+            buffered += length;
+            return this;
+        }
+        if (buffered > 0) {
+            final int fill = 32 - buffered;
+            System.arraycopy(bytes, offset, buffer, buffered, fill);
+            stripe(buffer, 0);
+            offset += fill;
+            length -= fill;
+            buffered = 0;
+        }
+        for (; length >= 32; offset += 32, length -= 32) {
+            stripe(bytes, offset);
+        }
+        System.arraycopy(bytes, offset, buffer, 0, length);
+        buffered = length;
+        return this;
+    }
+
+    XxHash64 update(long value) {
+        final byte[] bytes = new byte[Long.BYTES];
+        LONG_LE.set(bytes, 0, value);
+        return update(bytes, 0, bytes.length);
+    }
+
+    XxHash64 update(InputStream stream) throws IOException {
+        final byte[] bytes = new byte[64 * 1024];
+        for (int n; (n = stream.read(bytes)) > 0; ) {
+            update(bytes, 0, n);
+        }
+        return this;
+    }
+
+    private void stripe(byte[] bytes, int offset) {
+        v1 = round(v1, (long) LONG_LE.get(bytes, offset));
+        v2 = round(v2, (long) LONG_LE.get(bytes, offset + 8));
+        v3 = round(v3, (long) LONG_LE.get(bytes, offset + 16));
+        v4 = round(v4, (long) LONG_LE.get(bytes, offset + 24));
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long merge(long hash, long value) {
+        hash ^= round(0, value);
+        return hash * P1 + P4;
+    }
+
+    long digest() {
+        long hash;
+        if (total >= 32) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = seed + P5;
+        }
+        hash += total;
+        int i = 0;
+        for (; i + 8 <= buffered; i += 8) {
+            hash ^= round(0, (long) LONG_LE.get(buffer, i));
+            hash = Long.rotateLeft(hash, 27) * P1 + P4;
+        }
+        if (i + 4 <= buffered) {
+            hash ^= ((int) INT_LE.get(buffer, i) & 0xFFFFFFFFL) * P1;
+            hash = Long.rotateLeft(hash, 23) * P2 + P3;
+            i += 4;
+        }
+        for (; i < buffered; i++) {
+            hash ^= (buffer[i] & 0xFF) * P5;
+            hash = Long.rotateLeft(hash, 11) * P1;
+        }
+        hash ^= hash >>> 33;
+        hash *= P2;
+        hash ^= hash >>> 29;
+        hash *= P3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+}
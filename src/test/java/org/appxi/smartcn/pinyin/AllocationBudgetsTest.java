@@ -0,0 +1,134 @@
+package org.appxi.smartcn.pinyin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * 转换热路径的分配预算：以 com.sun.management.ThreadMXBean 统计每转换一个字符分配的字节数，超过预算时测试失败。
+ * <p>
+ * 不依赖测试框架，由 surefire 按 POJO 测试运行（public 的 test* 方法，失败即抛出 AssertionError），
+ * <code>mvn test</code> 即执行，不需要其它构件。
+ * surefire 以 -Xint 运行（见 pom.xml），结果不受 JIT 逃逸分析影响，每次相同；预算取实测值加约 10% 余量，
+ * 每个字符多分配一个对象头（16 字节）即超出。热路径有意改变分配时须重新测量并更新预算。
+ * <p>
+ * 文本与 benchmarks 中 SyntheticCorpus 的生成方式相同：由 data.txt 的单字、词与标点、英文片段混合的 1024 个字符。
+ */
+public class AllocationBudgetsTest {
+    private static final int TEXT_LENGTH = 1024;
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 200;
+
+    private static final String[] LATIN = {"iPhone", "2022", "OK", "Java 17", "https://example.com/a?b=1", "v1.2.3", "USB-C"};
+    private static final String PUNCTUATION = "，。、！？：；（）“”,.!? ";
+
+    private static String text;
+
+    public void testConvert() {
+        // 实测 61.3
+        check(68, PinyinConvertor.ONE::convert);
+    }
+
+    public void testPinyin() {
+        // 实测 49.4
+        check(55, PinyinHelper::pinyin);
+    }
+
+    public void testPinyinWithTone() {
+        // 实测 49.4
+        check(55, text -> PinyinHelper.pinyin(text, true));
+    }
+
+    public void testConvertWithSeparator() {
+        // 实测 33.3
+        check(37, text -> PinyinHelper.convert(text, " ", true));
+    }
+
+    public void testConvertToFirstChars() {
+        // 实测 44.0
+        check(49, text -> PinyinHelper.convertToFirstChars(text, "", false));
+    }
+
+    public void testPinyinToOutputStream() {
+        // 实测 30.9
+        check(34, text -> {
+            try {
+                PinyinConvertor.ONE.pinyin(text, PinyinFormat.WITHOUT_TONE, " ", OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void check(double budget, Consumer<String> path) {
+        final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadMXBean.isThreadAllocatedMemorySupported()) {
+            System.out.println("thread allocated memory is not supported, skipped");
+            return;
+        }
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        final String text = text();
+        for (int i = 0; i < WARMUP; i++) {
+            path.accept(text);
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            path.accept(text);
+        }
+        final long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        final double bytesPerChar = (double) allocated / ITERATIONS / TEXT_LENGTH;
+        if (bytesPerChar > budget) {
+            throw new AssertionError(String.format("%.2f B/char over budget %.1f", bytesPerChar, budget));
+        }
+    }
+
+    /**
+     * 生成测试文本并预先加载词典，只执行一次
+     */
+    private static synchronized String text() {
+        if (null != text) return text;
+        final List<String> singles = new ArrayList<>(), words = new ArrayList<>();
+        try (InputStream stream = PinyinConvertor.class.getResourceAsStream("data.txt");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                final int idx = line.indexOf('=');
+                if (idx <= 0) continue;
+                (idx == 1 ? singles : words).add(line.substring(0, idx));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final Random random = new Random(20220702L);
+        final StringBuilder buf = new StringBuilder(TEXT_LENGTH + 32);
+        while (buf.length() < TEXT_LENGTH) {
+            final int dice = random.nextInt(100);
+            if (dice < 45) {
+                buf.append(singles.get(random.nextInt(singles.size())));
+            } else if (dice < 80) {
+                buf.append(words.get(random.nextInt(words.size())));
+            } else if (dice < 92) {
+                buf.append(PUNCTUATION.charAt(random.nextInt(PUNCTUATION.length())));
+            } else {
+                buf.append(' ').append(LATIN[random.nextInt(LATIN.length)]).append(' ');
+            }
+        }
+        buf.setLength(TEXT_LENGTH);
+        if (Character.isHighSurrogate(buf.charAt(TEXT_LENGTH - 1))) {
+            buf.setCharAt(TEXT_LENGTH - 1, ' ');
+        }
+        PinyinConvertor.ONE.convert("");
+        return text = buf.toString();
+    }
+}